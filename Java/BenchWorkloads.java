@@ -0,0 +1,86 @@
+/**
+ *
+ * Workloads measured by the JMH benchmarks in bench/
+ * JMH can't generate code for classes in the default package, so the benchmarks live in package
+ * bench and build their workloads through these factories (looked up reflectively, once per
+ * trial). Each workload runs one operation per call and returns its result for the Blackhole
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.Callable;
+
+public final class BenchWorkloads {
+
+	private BenchWorkloads() {}
+
+	// One generation of Life (or another rule) per call, on a board seeded at the given density
+	public static Callable<Object> lifeStep(int width, int height, String rule, double initProb, boolean sparse, long seed) {
+		LifeRule lifeRule = LifeRule.parse(rule);
+		Random r = new Random(seed);
+		if (!lifeRule.isLifeLike()) {
+			RuleSimulation sim = new RuleSimulation(width, height, lifeRule);
+			sim.fillRandom(r, initProb);
+			return () -> {
+				sim.step();
+				return sim.getGrid();
+			};
+		}
+		LifeSimulation sim = new LifeSimulation(width, height, lifeRule);
+		sim.setSparse(sparse);
+		sim.fillRandom(r, initProb);
+		return () -> {
+			sim.step();
+			return sim.getGrid();
+		};
+	}
+
+	// One generation of PredPrey per call
+	public static Callable<Object> predPreyStep(int width, int height, double initPrey, double initPred, int maxN, long seed) {
+		PredPreySimulation sim = new PredPreySimulation(width, height, maxN, seed);
+		sim.fillRandom(initPrey, initPred);
+		return () -> {
+			sim.step();
+			return sim.getBoard();
+		};
+	}
+
+	// Load a saved board (format by extension: csv, bin or rle) per call
+	public static Callable<Object> loadBoard(String format, int width, int height, double initProb, long seed)
+			throws IOException {
+		File file = tempBoard(format);
+		BoardIO.write(randomGrid(width, height, initProb, seed), file, LifeRule.CONWAY);
+		return () -> BoardIO.read(file);
+	}
+
+	// Save a board per call
+	public static Callable<Object> saveBoard(String format, int width, int height, double initProb, long seed)
+			throws IOException {
+		File file = tempBoard(format);
+		LifeGrid grid = randomGrid(width, height, initProb, seed);
+		return () -> {
+			BoardIO.write(grid, file, LifeRule.CONWAY);
+			return file;
+		};
+	}
+
+	// Generate the torus vertices the 3D sketches draw with, per call
+	public static Callable<Object> torusVertices(int width, int height) {
+		return () -> TorusGeometry.vertices(width, height, 150, 80);
+	}
+
+	private static LifeGrid randomGrid(int width, int height, double initProb, long seed) {
+		LifeSimulation sim = new LifeSimulation(width, height, LifeRule.CONWAY);
+		sim.fillRandom(new Random(seed), initProb);
+		return sim.getGrid();
+	}
+
+	private static File tempBoard(String format) throws IOException {
+		File file = File.createTempFile("bench-board", "." + format);
+		file.deleteOnExit();
+		return file;
+	}
+
+}
@@ -0,0 +1,310 @@
+/**
+ *
+ * Reading and writing boards
+ * CSV files (.csv) use the format GameOfLife has always saved: a "length,height" header followed
+ * by one "i,j,state" line per cell
+ * Binary files (.bin) hold the grid's own words behind a 24 byte little-endian header (magic,
+ * version, width, height, words per row, reserved), so they load with one memory-mapped copy
+ * RLE files (.rle) are the run length encoded patterns used by Golly and the LifeWiki
+ *
+ **/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public final class BoardIO {
+
+	// "CALG" read as a little-endian int
+	private static final int MAGIC = 0x474C4143, VERSION = 1, HEADER_BYTES = 24;
+
+	// RLE body lines are kept under this length, as the format asks
+	private static final int RLE_LINE = 70;
+
+	private BoardIO() {}
+
+	// Load any supported board file, chosen by extension (.bin, .rle, otherwise CSV)
+	public static LifeGrid read(File file) throws IOException {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".bin")) return readBinary(file);
+		if (name.endsWith(".rle")) return readRle(file);
+		return readCsv(file);
+	}
+
+	// The rule a board file was saved with, or null if it doesn't say (only RLE files record one)
+	public static LifeRule readRule(File file) throws IOException {
+		if (!file.getName().toLowerCase().endsWith(".rle")) return null;
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String header = rleHeader(in, file);
+
+			// The rule is the header's last field, and may hold commas itself (Larger than Life);
+			// Golly appends the bounded grid it ran on after a ':', which is dropped
+			int at = header.indexOf("rule");
+			if (at < 0) return null;
+			String rule = header.substring(at + 4).trim();
+			if (!rule.startsWith("=")) throw new IOException("Malformed RLE header in " + file);
+			rule = rule.substring(1).trim();
+			if (rule.indexOf(':') >= 0) rule = rule.substring(0, rule.indexOf(':'));
+			try { return LifeRule.parse(rule); }
+			catch (IllegalArgumentException e) { throw new IOException("Unrecognized rule " + rule + " in " + file, e); }
+		}
+	}
+
+	/**
+	 *  The rule to run a saved board under: given (a rulestring, or null if none was), or else the
+	 *  rule the file records, or else B3/S23. A given rule that differs from the file's is refused,
+	 *  rather than running the pattern under a rule it wasn't made for.
+	 */
+	public static LifeRule ruleFor(File file, String given) throws IOException {
+		LifeRule saved = readRule(file);
+		if (given == null) return saved != null ? saved : LifeRule.CONWAY;
+		LifeRule rule = LifeRule.parse(given);
+		if (saved != null && !saved.equals(rule))
+			throw new IllegalArgumentException(file + " is a " + saved + " pattern, not " + rule);
+		return rule;
+	}
+
+	// Save in the format chosen by extension; the rule is only recorded by RLE files
+	public static void write(LifeGrid grid, File file, LifeRule rule) throws IOException {
+		String name = file.getName().toLowerCase();
+		if (name.endsWith(".bin")) writeBinary(grid, file);
+		else if (name.endsWith(".rle")) writeRle(grid, file, rule);
+		else writeCsv(grid, file);
+	}
+
+	// Load a CSV board into a new grid of the size given in its header
+	public static LifeGrid readCsv(File file) throws IOException {
+		try (CsvBoardReader in = new CsvBoardReader(file)) {
+			LifeGrid grid = new LifeGrid(in.getLength(), in.getHeight());
+			in.readInto(grid, 0, 0);
+			return grid;
+		}
+	}
+
+	public static void writeCsv(LifeGrid grid, File file) throws IOException {
+		try (PrintWriter print = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			print.println(grid.getWidth() + "," + grid.getHeight());
+			for (int i = 0; i < grid.getWidth(); i++) {
+				for (int j = 0; j < grid.getHeight(); j++) {
+					print.println(i + "," + j + "," + (grid.get(i, j) ? 1 : 0));
+				}
+			}
+			check(print, file);
+		}
+	}
+
+	public static void writeCsv(RuleGrid grid, File file) throws IOException {
+		try (PrintWriter print = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			print.println(grid.getWidth() + "," + grid.getHeight());
+			for (int i = 0; i < grid.getWidth(); i++) {
+				for (int j = 0; j < grid.getHeight(); j++) {
+					print.println(i + "," + j + "," + grid.get(i, j));
+				}
+			}
+			check(print, file);
+		}
+	}
+
+	// PredPrey boards: state is 0 (dead), 1 (prey), 2 (predator) or 3 (both)
+	public static void writeCsv(PredPreyBoard board, File file) throws IOException {
+		try (PrintWriter print = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			print.println(board.getLength() + "," + board.getHeight());
+			for (int i = 0; i < board.getLength(); i++) {
+				for (int j = 0; j < board.getHeight(); j++) {
+					int state = (board.isPrey(i, j) ? 1 : 0) + (board.isPredator(i, j) ? 2 : 0);
+					print.println(i + "," + j + "," + state);
+				}
+			}
+			check(print, file);
+		}
+	}
+
+	// Map the file and copy its words straight into a new grid
+	public static LifeGrid readBinary(File file) throws IOException {
+		int[] size = readBinarySize(file);
+		LifeGrid grid = new LifeGrid(size[0], size[1]);
+		readBinaryRows(file, 0, size[1], grid, 0);
+		return grid;
+	}
+
+	// Width and height of a binary board file, from its header alone
+	public static int[] readBinarySize(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining() && channel.read(header, header.position()) > 0) {}
+			if (header.hasRemaining() || header.getInt(0) != MAGIC) throw new IOException("Not a binary board file " + file);
+			if (header.getInt(4) != VERSION) throw new IOException("Unsupported board file version " + header.getInt(4) + " in " + file);
+			int width = header.getInt(8), height = header.getInt(12), wordsPerRow = header.getInt(16);
+			if (width < 1 || height < 1 || wordsPerRow != (width + 63) >>> 6
+					|| channel.size() < HEADER_BYTES + 8L * wordsPerRow * height)
+				throw new IOException("Corrupt board file " + file);
+			return new int[] {width, height};
+		}
+	}
+
+	/**
+	 *  Copy rows [from, from + count) of a binary board file into grid (which must be as wide as
+	 *  the board), starting at its row at. Only those rows are mapped, a slice at a time, so one
+	 *  band of a board far larger than the heap can be loaded (see ShardWorker).
+	 */
+	public static void readBinaryRows(File file, int from, int count, LifeGrid grid, int at) throws IOException {
+		int[] size = readBinarySize(file);
+		if (size[0] != grid.getWidth() || from < 0 || from + count > size[1] || at + count > grid.getHeight())
+			throw new IllegalArgumentException("Rows " + from + " to " + (from + count) + " of " + file + " don't fit the grid");
+		int wordsPerRow = grid.getWordsPerRow();
+		int slice = Math.max(1, (1 << 30) / (8 * wordsPerRow));
+		long[] words = grid.getWords();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			for (int row = 0; row < count; row += slice) {
+				int rows = Math.min(slice, count - row);
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY,
+						binaryRowOffset(wordsPerRow, from + row), 8L * wordsPerRow * rows);
+				map.order(ByteOrder.LITTLE_ENDIAN);
+				map.asLongBuffer().get(words, (at + row) * wordsPerRow, rows * wordsPerRow);
+			}
+		}
+
+		// The grid relies on the bits past the end of each row being zero
+		long lastMask = -1L >>> (63 - ((grid.getWidth() - 1) & 63));
+		for (int row = at; row < at + count; row++) words[row * wordsPerRow + wordsPerRow - 1] &= lastMask;
+	}
+
+	// Where row y starts in a binary board file with that many words per row
+	public static long binaryRowOffset(int wordsPerRow, int y) {
+		return HEADER_BYTES + 8L * wordsPerRow * y;
+	}
+
+	// Header of a binary board file, ready to write, for writers that stream the words after it themselves
+	public static ByteBuffer binaryHeader(int width, int height) {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt((width + 63) >>> 6).putInt(0);
+		header.flip();
+		return header;
+	}
+
+	// The header, then the rows mapped a slice at a time (as readBinaryRows reads them), so boards
+	// of any size can be written, not only those under the 2 GB one mapping can hold
+	public static void writeBinary(LifeGrid grid, File file) throws IOException {
+		long[] words = grid.getWords();
+		int wordsPerRow = grid.getWordsPerRow(), height = grid.getHeight();
+		int slice = Math.max(1, (1 << 30) / (8 * wordsPerRow));
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = binaryHeader(grid.getWidth(), height);
+			while (header.hasRemaining()) channel.write(header);
+			for (int row = 0; row < height; row += slice) {
+				int rows = Math.min(slice, height - row);
+				MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE,
+						binaryRowOffset(wordsPerRow, row), 8L * wordsPerRow * rows);
+				map.order(ByteOrder.LITTLE_ENDIAN);
+				map.asLongBuffer().put(words, row * wordsPerRow, rows * wordsPerRow);
+				map.force();
+			}
+		}
+	}
+
+	// Load an RLE pattern into a grid the size given in its "x = .., y = .." line
+	public static LifeGrid readRle(File file) throws IOException {
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			int width = 0, height = 0;
+			for (String field : rleHeader(in, file).split(",")) {
+				String[] pair = field.split("=");
+				if (pair.length != 2) continue;
+				String key = pair[0].trim();
+				if (key.equals("x")) width = Integer.parseInt(pair[1].trim());
+				else if (key.equals("y")) height = Integer.parseInt(pair[1].trim());
+			}
+			if (width < 1 || height < 1) throw new IOException("Missing RLE header in " + file);
+			LifeGrid grid = new LifeGrid(width, height);
+
+			// Runs of dead ('b') and live (any other letter) cells; '$' ends a row, '!' the pattern
+			int x = 0, y = 0, run = 0, c;
+			while ((c = in.read()) != -1 && c != '!') {
+				if (c >= '0' && c <= '9') run = run * 10 + (c - '0');
+				else if (c == '$') {
+					y += Math.max(run, 1);
+					x = 0;
+					run = 0;
+				}
+				else if (Character.isLetter(c) || c == '.') {
+					int n = Math.max(run, 1);
+					if (c != 'b' && c != '.') {
+						if (y >= grid.getHeight() || x + n > grid.getWidth())
+							throw new IOException("RLE pattern overflows its header in " + file);
+						for (int k = 0; k < n; k++) grid.set(x + k, y, true);
+					}
+					x += n;
+					run = 0;
+				}
+				else if (c == '#') in.readLine();
+			}
+			return grid;
+		}
+	}
+
+	// The "x = .., y = .., rule = .." line, the first that isn't blank or a # comment
+	private static String rleHeader(BufferedReader in, File file) throws IOException {
+		String line;
+		while ((line = in.readLine()) != null) {
+			line = line.trim();
+			if (!line.isEmpty() && !line.startsWith("#")) return line;
+		}
+		throw new IOException("Missing RLE header in " + file);
+	}
+
+	// Save the grid as one RLE pattern the size of the whole board
+	public static void writeRle(LifeGrid grid, File file, LifeRule rule) throws IOException {
+		try (PrintWriter print = new PrintWriter(new BufferedWriter(new FileWriter(file)))) {
+			print.println("x = " + grid.getWidth() + ", y = " + grid.getHeight() + ", rule = " + rule);
+			StringBuilder line = new StringBuilder();
+			int pendingRows = 0;
+			for (int j = 0; j < grid.getHeight(); j++) {
+				int i = 0;
+				boolean empty = true;
+				while (i < grid.getWidth()) {
+					boolean alive = grid.get(i, j);
+					int n = 1;
+					while (i + n < grid.getWidth() && grid.get(i + n, j) == alive) n++;
+					i += n;
+
+					// Trailing dead cells are implied by the end of the row
+					if (!alive && i == grid.getWidth()) break;
+					if (empty && pendingRows > 0) {
+						appendRun(print, line, pendingRows, '$');
+						pendingRows = 0;
+					}
+					empty = false;
+					appendRun(print, line, n, alive ? 'o' : 'b');
+				}
+				pendingRows++;
+			}
+			line.append('!');
+			print.println(line);
+			check(print, file);
+		}
+	}
+
+	private static void appendRun(PrintWriter print, StringBuilder line, int n, char tag) {
+		String run = n > 1 ? n + String.valueOf(tag) : String.valueOf(tag);
+		if (line.length() + run.length() > RLE_LINE) {
+			print.println(line);
+			line.setLength(0);
+		}
+		line.append(run);
+	}
+
+	// PrintWriter swallows write errors, so surface them once the board is written
+	private static void check(PrintWriter print, File file) throws IOException {
+		if (print.checkError()) throw new IOException("Failed writing " + file);
+	}
+
+}
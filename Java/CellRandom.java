@@ -0,0 +1,38 @@
+/**
+ *
+ * Counter-based random numbers: each draw is a hash of (seed, generation, cell), so draws can be
+ * made in any order, on any thread, and a run is reproduced exactly by its seed
+ * The hash is SplitMix64's finalizer, applied once to fold in the generation and again per cell
+ *
+ **/
+
+public final class CellRandom {
+
+	// Odd constant (2^64 / golden ratio) spreading consecutive counters across the hash's input
+	private static final long GAMMA = 0x9E3779B97F4A7C15L;
+
+	private CellRandom() {}
+
+	// Key shared by every draw of one generation
+	public static long key(long seed, long generation) {
+		return mix(mix(seed) + generation * GAMMA);
+	}
+
+	// Uniform float in [0, 1) for a cell, with the same 24 bits of precision as Random.nextFloat()
+	public static float nextFloat(long key, long cell) {
+		return nextBits(key, cell) * 0x1.0p-24f;
+	}
+
+	// The same draw as nextFloat, as the 24-bit integer it is scaled from
+	public static int nextBits(long key, long cell) {
+		return (int) (mix(key + (cell + 1) * GAMMA) >>> 40);
+	}
+
+	// Also hashes board words (LifeGrid.hash)
+	static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+}
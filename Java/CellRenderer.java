@@ -0,0 +1,140 @@
+/**
+ *
+ * Draws a board of square cells through one screen-sized pixel buffer instead of a rect() per cell
+ * Each cell is scaled up to a dim x dim block of pixels (nearest neighbour), with the grid lines
+ * left in place between blocks, and only blocks whose colour changed are rewritten. Each frame is
+ * then a single unscaled image() call covering just the part of the buffer that changed
+ *
+ **/
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PImage;
+
+import java.util.Arrays;
+
+public final class CellRenderer {
+
+	public static final int BLACK = 0xFF000000, WHITE = 0xFFFFFFFF;
+
+	private final PApplet app;
+	private final int boardLength, boardHeight, dim;
+
+	// Screen-sized frame, and the colour each cell was last drawn with
+	private final PImage frame;
+	private final int[] cellColors;
+
+	// Grid lines run along the top and left edge of every cell when shown
+	private boolean gridLines;
+	private int lineColor = BLACK;
+
+	// Words of the Life grid last passed to setAll, so the next call only visits cells that differ
+	private long[] shown;
+	private int shownAlive, shownDead;
+
+	// Pixel bounds of everything written since the last draw(); empty when minX > maxX
+	private int minX, minY, maxX, maxY;
+
+	public CellRenderer(PApplet app, int boardLength, int boardHeight, int dim) {
+		this.app = app;
+		this.boardLength = boardLength;
+		this.boardHeight = boardHeight;
+		this.dim = dim;
+		frame = app.createImage(boardLength * dim, boardHeight * dim, PConstants.RGB);
+		cellColors = new int[boardLength * boardHeight];
+		repaint(BLACK);
+	}
+
+	// Show or hide grid lines of the given colour; changing them redraws the whole frame
+	public void setGridLines(boolean show, int color) {
+		if (show == gridLines && color == lineColor) return;
+		gridLines = show;
+		lineColor = color;
+		int[] pixels = frame.pixels;
+		for (int j = 0; j < boardHeight; j++) {
+			for (int i = 0; i < boardLength; i++) paint(pixels, i, j, cellColors[j * boardLength + i]);
+		}
+		markAll();
+	}
+
+	public void set(int i, int j, int color) {
+		shown = null;
+		color(i, j, color);
+	}
+
+	private void color(int i, int j, int color) {
+		int k = j * boardLength + i;
+		if (cellColors[k] == color) return;
+		cellColors[k] = color;
+		paint(frame.pixels, i, j, color);
+		int x = i * dim, y = j * dim;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		maxX = Math.max(maxX, x + dim - 1);
+		maxY = Math.max(maxY, y + dim - 1);
+	}
+
+	// Colour every cell from a Life grid; after the first call only words that changed are visited
+	public void setAll(LifeGrid grid, int alive, int dead) {
+		long[] words = grid.getWords();
+		int wordsPerRow = grid.getWordsPerRow();
+		boolean full = shown == null || shown.length != words.length || alive != shownAlive || dead != shownDead;
+		for (int j = 0; j < boardHeight; j++) {
+			for (int w = 0; w < wordsPerRow; w++) {
+				int k = j * wordsPerRow + w;
+				long word = words[k];
+				long diff = full ? -1L >>> (64 - Math.min(64, boardLength - w * 64)) : word ^ shown[k];
+				while (diff != 0) {
+					int b = Long.numberOfTrailingZeros(diff);
+					diff &= diff - 1;
+					color(w * 64 + b, j, (word >>> b & 1) != 0 ? alive : dead);
+				}
+			}
+		}
+		if (full) shown = new long[words.length];
+		System.arraycopy(words, 0, shown, 0, words.length);
+		shownAlive = alive;
+		shownDead = dead;
+	}
+
+	/**
+	 *  Blit the frame if anything changed since the last draw (the window keeps its contents
+	 *  between frames otherwise). The renderer's image cache only re-uploads the changed region
+	 */
+	public void draw() {
+		if (minX <= maxX) {
+			frame.updatePixels(minX, minY, maxX - minX + 1, maxY - minY + 1);
+			app.image(frame, 0, 0);
+			minX = minY = Integer.MAX_VALUE;
+			maxX = maxY = -1;
+		}
+	}
+
+	// Draw the whole frame next time, e.g. after something else drew over the window
+	public void markAll() {
+		minX = minY = 0;
+		maxX = frame.width - 1;
+		maxY = frame.height - 1;
+	}
+
+	private void repaint(int color) {
+		Arrays.fill(cellColors, color);
+		Arrays.fill(frame.pixels, color);
+		markAll();
+	}
+
+	// Fill cell (i, j)'s block, leaving its top and left edge to the grid lines
+	private void paint(int[] pixels, int i, int j, int color) {
+		int width = frame.width, x0 = i * dim, y0 = j * dim;
+		for (int y = 0; y < dim; y++) {
+			int row = (y0 + y) * width + x0;
+			if (gridLines && y == 0) {
+				Arrays.fill(pixels, row, row + dim, lineColor);
+				continue;
+			}
+			Arrays.fill(pixels, row, row + dim, color);
+			if (gridLines) pixels[row] = lineColor;
+		}
+	}
+
+}
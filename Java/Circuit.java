@@ -0,0 +1,314 @@
+/**
+ *
+ * A Life circuit put together from patterns: guns, eaters and the like at given positions,
+ * orientations and phases, some of them present only for one value of one of the circuit's inputs,
+ * and the rectangles where its outputs are read, each with the truth table it should show
+ * Built in code or read from a .circuit file (see read), and checked by CircuitVerifier
+ *
+ **/
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Circuit {
+
+	// Bands larger than any pattern, so phases are run on the calling thread
+	private static final ParallelStepper SERIAL = new ParallelStepper(Integer.MAX_VALUE);
+
+	// Patterns already run forward to a phase, by pattern, orientation, phase and rule
+	private static final Map<List<Object>, Placement> PHASED = new ConcurrentHashMap<>();
+
+	// Cells to OR into the board, their top left corner offset from the component's anchor
+	private static final class Placement {
+		final LifeGrid cells;
+		final int dx, dy;
+
+		Placement(LifeGrid cells, int dx, int dy) {
+			this.cells = cells;
+			this.dx = dx;
+			this.dy = dy;
+		}
+	}
+
+	// A placement at an anchor, present in every case or (input >= 0) only while that input has value
+	private static final class Component {
+		final Placement placement;
+		final int x, y, input;
+		final boolean value;
+
+		Component(Placement placement, int x, int y, int input, boolean value) {
+			this.placement = placement;
+			this.x = x;
+			this.y = y;
+			this.input = input;
+			this.value = value;
+		}
+	}
+
+	// Where an output is read, and its expected value in each case as a string of 0s and 1s
+	public static final class Output {
+		private final String name, expected;
+		private final int x, y, width, height;
+
+		Output(String name, int x, int y, int width, int height, String expected) {
+			this.name = name;
+			this.x = x;
+			this.y = y;
+			this.width = width;
+			this.height = height;
+			this.expected = expected;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getX() {
+			return x;
+		}
+
+		public int getY() {
+			return y;
+		}
+
+		public int getWidth() {
+			return width;
+		}
+
+		public int getHeight() {
+			return height;
+		}
+
+		public String getExpected() {
+			return expected;
+		}
+	}
+
+	private final String name;
+	private final int width, height;
+	private final LifeRule rule;
+	private final List<String> inputs = new ArrayList<String>();
+	private final List<Component> components = new ArrayList<Component>();
+	private final List<Output> outputs = new ArrayList<Output>();
+
+	public Circuit(String name, int width, int height, LifeRule rule) {
+		if (width < 1 || height < 1) throw new IllegalArgumentException("Circuit must be at least 1x1");
+		this.name = name;
+		this.width = width;
+		this.height = height;
+		this.rule = rule;
+	}
+
+	/**
+	 *  Add a pattern to the board in every case. rotate and flip are as in Pattern.orientation;
+	 *  phase runs the pattern that many generations on its own, on an unbounded plane, before it
+	 *  is placed, so guns can be set to fire in step with one another.
+	 */
+	public Circuit place(Pattern pattern, int x, int y, int rotate, boolean flip, int phase) {
+		components.add(new Component(placement(pattern, Pattern.orientation(rotate, flip), phase), x, y, -1, false));
+		return this;
+	}
+
+	// Add a pattern only while input has the given value, such as an eater that blocks an input's
+	// gun while the input is 0; a new input name is added after the others
+	public Circuit placeWhen(String input, boolean value, Pattern pattern, int x, int y, int rotate, boolean flip,
+			int phase) {
+		int index = inputs.indexOf(input);
+		if (index < 0) {
+			index = inputs.size();
+			inputs.add(input);
+		}
+		components.add(new Component(placement(pattern, Pattern.orientation(rotate, flip), phase), x, y, index, value));
+		return this;
+	}
+
+	// Read an output from the width x height rectangle at (x, y); expected holds its value in each
+	// case, in case order (see getInput)
+	public Circuit output(String name, int x, int y, int width, int height, String expected) {
+		if (!expected.matches("[01]+")) throw new IllegalArgumentException("Expected values must be 0s and 1s, not " + expected);
+		outputs.add(new Output(name, x, y, width, height, expected));
+		return this;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public LifeRule getRule() {
+		return rule;
+	}
+
+	public List<String> getInputs() {
+		return Collections.unmodifiableList(inputs);
+	}
+
+	public List<Output> getOutputs() {
+		return Collections.unmodifiableList(outputs);
+	}
+
+	// Number of input combinations
+	public int getCases() {
+		return 1 << inputs.size();
+	}
+
+	// Value of input k in case c: cases count up in binary with the first input as the most
+	// significant bit, the order truth tables are written in
+	public boolean getInput(int c, int k) {
+		return ((c >> (inputs.size() - 1 - k)) & 1) == 1;
+	}
+
+	// Inputs of case c, as "A=0 B=1"
+	public String describeCase(int c) {
+		StringBuilder s = new StringBuilder();
+		for (int k = 0; k < inputs.size(); k++) {
+			if (k > 0) s.append(' ');
+			s.append(inputs.get(k)).append('=').append(getInput(c, k) ? 1 : 0);
+		}
+		return s.toString();
+	}
+
+	// Check that every output has exactly one expected value per case
+	public void validate() {
+		if (inputs.size() > 20) throw new IllegalStateException(name + " has too many inputs to try every case");
+		for (Output output : outputs) {
+			if (output.expected.length() != getCases())
+				throw new IllegalStateException(name + ": output " + output.name + " lists " + output.expected.length()
+						+ " values, but " + inputs.size() + " inputs make " + getCases() + " cases");
+		}
+	}
+
+	// The starting board for case c
+	public LifeGrid build(int c) {
+		LifeGrid grid = new LifeGrid(width, height);
+		for (Component component : components) {
+			if (component.input >= 0 && getInput(c, component.input) != component.value) continue;
+			Placement placement = component.placement;
+			grid.stamp(placement.cells, component.x + placement.dx, component.y + placement.dy, false);
+		}
+		return grid;
+	}
+
+	private Placement placement(Pattern pattern, int orientation, int phase) {
+		if (phase < 0) throw new IllegalArgumentException("Phase must not be negative");
+		if (phase == 0)
+			return new Placement(pattern.getCells(orientation), pattern.getOffsetX(orientation), pattern.getOffsetY(orientation));
+		return PHASED.computeIfAbsent(Arrays.<Object>asList(pattern, orientation, phase, rule.toString()), key -> {
+			LifePlane plane = new LifePlane();
+			plane.paste(pattern.getCells(orientation), pattern.getOffsetX(orientation), pattern.getOffsetY(orientation));
+			for (int k = 0; k < phase; k++) plane.step(rule, SERIAL, false);
+			int[] bounds = plane.getBounds();
+			if (bounds == null) return new Placement(new LifeGrid(1, 1), 0, 0);
+			LifeGrid cells = new LifeGrid(bounds[2] - bounds[0] + 1, bounds[3] - bounds[1] + 1);
+			plane.copyTo(cells, bounds[0], bounds[1]);
+			return new Placement(cells, bounds[0], bounds[1]);
+		});
+	}
+
+	/**
+	 *  Read a circuit from a text file, one item per line, with '#' starting a comment:
+	 *    size W H                       board size, before anything is placed
+	 *    rule RULE                      Life-like rule, before anything is placed (default B3/S23)
+	 *    load FILE                      add a pattern file (.rle, .csv or .bin; relative to this one) to
+	 *                                   the library, named after the file without its extension
+	 *    PATTERN X Y [rotate R] [flip] [phase P]
+	 *                                   place the library's PATTERN anchored at (X, Y)
+	 *    when INPUT=0|1 PATTERN X Y ... place it only while INPUT has that value
+	 *    output NAME X Y W H VALUES     read an output from a rectangle; VALUES is its truth table column
+	 *  The circuit is named after the file.
+	 */
+	public static Circuit read(File file, PatternLibrary library) throws IOException {
+		String name = file.getName();
+		if (name.lastIndexOf('.') > 0) name = name.substring(0, name.lastIndexOf('.'));
+		Circuit circuit = null;
+		int width = 0, height = 0;
+		LifeRule rule = LifeRule.CONWAY;
+		try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+			String line;
+			int number = 0;
+			while ((line = in.readLine()) != null) {
+				number++;
+				if (line.indexOf('#') >= 0) line = line.substring(0, line.indexOf('#'));
+				String[] words = line.trim().split("\\s+");
+				if (words[0].isEmpty()) continue;
+				try {
+					if (words[0].equals("size") || words[0].equals("rule")) {
+						if (circuit != null) throw new IllegalArgumentException(words[0] + " must come before anything is placed");
+						if (words[0].equals("rule")) rule = LifeRule.parse(words[1]);
+						else {
+							width = Integer.parseInt(words[1]);
+							height = Integer.parseInt(words[2]);
+						}
+						continue;
+					}
+					if (words[0].equals("load")) {
+						File pattern = new File(words[1]);
+						library.load(pattern.isAbsolute() ? pattern : new File(file.getParentFile(), words[1]));
+						continue;
+					}
+					if (circuit == null) {
+						if (width == 0) throw new IllegalArgumentException("size must come before anything is placed");
+						circuit = new Circuit(name, width, height, rule);
+					}
+					if (words[0].equals("output")) {
+						circuit.output(words[1], Integer.parseInt(words[2]), Integer.parseInt(words[3]),
+								Integer.parseInt(words[4]), Integer.parseInt(words[5]), words[6]);
+					}
+					else if (words[0].equals("when")) {
+						String[] condition = words[1].split("=");
+						if (condition.length != 2 || !condition[1].matches("[01]"))
+							throw new IllegalArgumentException("Expected INPUT=0 or INPUT=1, got " + words[1]);
+						placeComponent(circuit, library, Arrays.copyOfRange(words, 2, words.length), condition[0],
+								condition[1].equals("1"));
+					}
+					else placeComponent(circuit, library, words, null, false);
+				}
+				catch (RuntimeException e) {
+					throw new IOException(file + ":" + number + ": " + e.getMessage(), e);
+				}
+			}
+		}
+		if (circuit == null) throw new IOException("Nothing placed in " + file);
+		try {
+			circuit.validate();
+		}
+		catch (IllegalStateException e) {
+			throw new IOException(file + ": " + e.getMessage(), e);
+		}
+		return circuit;
+	}
+
+	// PATTERN X Y [rotate R] [flip] [phase P], for every case or only while input has value
+	private static void placeComponent(Circuit circuit, PatternLibrary library, String[] words, String input,
+			boolean value) {
+		Pattern pattern = library.get(words[0]);
+		if (pattern == null) throw new IllegalArgumentException("Unknown pattern " + words[0]);
+		int x = Integer.parseInt(words[1]), y = Integer.parseInt(words[2]);
+		int rotate = 0, phase = 0;
+		boolean flip = false;
+		for (int k = 3; k < words.length; k++) {
+			if (words[k].equals("flip")) flip = true;
+			else if (words[k].equals("rotate")) rotate = Integer.parseInt(words[++k]);
+			else if (words[k].equals("phase")) phase = Integer.parseInt(words[++k]);
+			else throw new IllegalArgumentException("Unknown option " + words[k]);
+		}
+		if (input == null) circuit.place(pattern, x, y, rotate, flip, phase);
+		else circuit.placeWhen(input, value, pattern, x, y, rotate, flip, phase);
+	}
+
+}
@@ -0,0 +1,241 @@
+/**
+ *
+ * Checks circuits against their truth tables, running every input combination (case) of every
+ * circuit headlessly, one case per thread at a time
+ * A case runs only until its board repeats itself (see CycleDetector), however long that takes
+ * the circuit, and its outputs are read over that repeating period: an output is 1 if any cell of
+ * its rectangle changed during the period, as cells do while a glider stream runs into it, and 0
+ * if the rectangle stayed still. Its latency is the generation the first glider reached it (for a
+ * 1) or the last one did (for a 0 that had some stray gliders before it settled)
+ *
+ * Usage: java CircuitVerifier [options] FILE|DIR ...
+ *   --threads N        cases run at once (default: one per processor)
+ *   --generations N    give up on a case that hasn't settled by then (default 10000)
+ *   --patterns DIR     load every pattern file in DIR into the library before reading the circuits
+ * Every .circuit file named, or in a directory named, is checked, one line of results each; the exit
+ * status is 1 if any circuit fails
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public final class CircuitVerifier {
+
+	// Bands larger than any board, so each case steps on the thread that owns it
+	private static final ParallelStepper SERIAL = new ParallelStepper(Integer.MAX_VALUE);
+
+	// Longest period looked for
+	private static final int CYCLE_WINDOW = 4096;
+
+	// Outputs of one case: each output's value ('?' if the case never settled) and latency, and the
+	// generation the board was found to repeat
+	private static final class Case {
+		final char[] values;
+		final long[] latency;
+		final long settled;
+
+		Case(char[] values, long[] latency, long settled) {
+			this.values = values;
+			this.latency = latency;
+			this.settled = settled;
+		}
+	}
+
+	// What one circuit did in every case
+	public static final class Result {
+		private final Circuit circuit;
+		private final String[] actual;
+		private final long latency, settled;
+
+		Result(Circuit circuit, Case[] cases) {
+			this.circuit = circuit;
+			int outputs = circuit.getOutputs().size();
+			actual = new String[outputs];
+			long latency = 0, settled = 0;
+			for (int k = 0; k < outputs; k++) {
+				char[] values = new char[cases.length];
+				for (int c = 0; c < cases.length; c++) {
+					values[c] = cases[c].values[k];
+					latency = Math.max(latency, cases[c].latency[k]);
+				}
+				actual[k] = new String(values);
+			}
+			for (Case c : cases) settled = Math.max(settled, c.settled);
+			this.latency = latency;
+			this.settled = settled;
+		}
+
+		public Circuit getCircuit() {
+			return circuit;
+		}
+
+		// Values output k took, one per case, as Output.getExpected lists them
+		public String getActual(int k) {
+			return actual[k];
+		}
+
+		public boolean isPassed() {
+			for (int k = 0; k < actual.length; k++) {
+				if (!actual[k].equals(circuit.getOutputs().get(k).getExpected())) return false;
+			}
+			return true;
+		}
+
+		// Longest latency of any output in any case
+		public long getLatency() {
+			return latency;
+		}
+
+		// Most generations any case took to settle
+		public long getSettled() {
+			return settled;
+		}
+
+		// One line summing up the result, with the failing cases after it
+		public String toString() {
+			StringBuilder s = new StringBuilder(String.format("%-24s %s  %d cases  latency %d  settled by %d",
+					circuit.getName(), isPassed() ? "pass" : "FAIL", circuit.getCases(), latency, settled));
+			List<Circuit.Output> outputs = circuit.getOutputs();
+			for (int k = 0; k < outputs.size(); k++) {
+				String expected = outputs.get(k).getExpected();
+				for (int c = 0; c < expected.length(); c++) {
+					if (actual[k].charAt(c) == expected.charAt(c)) continue;
+					s.append(String.format("%n    %s: %s was %s, expected %s", circuit.describeCase(c), outputs.get(k).getName(),
+							actual[k].charAt(c) == '?' ? "unsettled" : actual[k].charAt(c), expected.charAt(c)));
+				}
+			}
+			return s.toString();
+		}
+	}
+
+	private final int threads;
+	private final long maxGenerations;
+
+	public CircuitVerifier(int threads, long maxGenerations) {
+		if (threads < 1) throw new IllegalArgumentException("Need at least one thread");
+		this.threads = threads;
+		this.maxGenerations = maxGenerations;
+	}
+
+	public Result verify(Circuit circuit) throws InterruptedException {
+		return verify(Arrays.asList(circuit)).get(0);
+	}
+
+	// Every case of every circuit is queued at once, so a batch keeps all threads busy to the end
+	// rather than waiting on each circuit's slowest case
+	public List<Result> verify(List<Circuit> circuits) throws InterruptedException {
+		for (Circuit circuit : circuits) circuit.validate();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<List<Future<Case>>> futures = new ArrayList<List<Future<Case>>>();
+			for (Circuit circuit : circuits) {
+				List<Future<Case>> cases = new ArrayList<Future<Case>>();
+				for (int c = 0; c < circuit.getCases(); c++) {
+					int number = c;
+					cases.add(pool.submit(() -> run(circuit, number)));
+				}
+				futures.add(cases);
+			}
+			List<Result> results = new ArrayList<Result>();
+			for (int k = 0; k < circuits.size(); k++) {
+				Case[] cases = new Case[circuits.get(k).getCases()];
+				for (int c = 0; c < cases.length; c++) cases[c] = futures.get(k).get(c).get();
+				results.add(new Result(circuits.get(k), cases));
+			}
+			return results;
+		}
+		catch (ExecutionException e) {
+			throw new IllegalStateException("Case failed to run", e.getCause());
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	// Step case c until the board repeats, noting when each output's rectangle changes
+	private Case run(Circuit circuit, int c) {
+		LifeSimulation sim = new LifeSimulation(circuit.getWidth(), circuit.getHeight(), circuit.getRule(), SERIAL);
+		sim.getGrid().copyFrom(circuit.build(c));
+		sim.invalidate();
+		sim.setCycleDetection(CYCLE_WINDOW);
+		List<Circuit.Output> outputs = circuit.getOutputs();
+		long[] first = new long[outputs.size()], last = new long[outputs.size()];
+		while (sim.getPeriod() == 0 && sim.getGeneration() < maxGenerations) {
+			sim.step();
+			for (int k = 0; k < outputs.size(); k++) {
+				if (!changed(sim.getPrevious(), sim.getGrid(), outputs.get(k))) continue;
+				if (first[k] == 0) first[k] = sim.getGeneration();
+				last[k] = sim.getGeneration();
+			}
+		}
+
+		// The generations after the cycle's first are the ones that repeat
+		char[] values = new char[outputs.size()];
+		long[] latency = new long[outputs.size()];
+		for (int k = 0; k < outputs.size(); k++) {
+			if (sim.getPeriod() == 0) values[k] = '?';
+			else values[k] = last[k] > sim.getCycleStart() ? '1' : '0';
+			latency[k] = values[k] == '1' ? first[k] : last[k];
+		}
+		return new Case(values, latency, sim.getGeneration());
+	}
+
+	// Whether any cell of the output's rectangle differs between the two generations
+	private static boolean changed(LifeGrid before, LifeGrid after, Circuit.Output output) {
+		int width = after.getWidth(), height = after.getHeight();
+		for (int j = 0; j < output.getHeight(); j++) {
+			int y = Math.floorMod(output.getY() + j, height);
+			for (int i = 0; i < output.getWidth(); i++) {
+				int x = Math.floorMod(output.getX() + i, width);
+				if (before.get(x, y) != after.get(x, y)) return true;
+			}
+		}
+		return false;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int threads = Runtime.getRuntime().availableProcessors();
+		long generations = 10000;
+		PatternLibrary library = new PatternLibrary();
+		List<File> files = new ArrayList<File>();
+		for (int k = 0; k < args.length; k++) {
+			if (args[k].equals("--threads") && k + 1 < args.length) threads = Integer.parseInt(args[++k]);
+			else if (args[k].equals("--generations") && k + 1 < args.length) generations = Long.parseLong(args[++k]);
+			else if (args[k].equals("--patterns") && k + 1 < args.length) library.loadDirectory(new File(args[++k]));
+			else if (args[k].startsWith("--")) throw new IllegalArgumentException("Unknown option " + args[k]);
+			else files.add(new File(args[k]));
+		}
+		if (files.isEmpty()) {
+			System.err.println("Usage: java CircuitVerifier [--threads N] [--generations N] [--patterns DIR] FILE|DIR ...");
+			System.exit(2);
+		}
+
+		List<Circuit> circuits = new ArrayList<Circuit>();
+		for (File file : files) {
+			File[] listed = file.isDirectory() ? file.listFiles((dir, name) -> name.endsWith(".circuit")) : new File[] {file};
+			Arrays.sort(listed);
+			for (File circuit : listed) circuits.add(Circuit.read(circuit, library));
+		}
+
+		long start = System.nanoTime();
+		List<Result> results = new CircuitVerifier(threads, generations).verify(circuits);
+		int failed = 0, cases = 0;
+		for (Result result : results) {
+			System.out.println(result);
+			if (!result.isPassed()) failed++;
+			cases += result.getCircuit().getCases();
+		}
+		System.out.printf("%d circuits, %d failed, %d cases in %.1f s%n", results.size(), failed, cases,
+				(System.nanoTime() - start) / 1e9);
+		System.exit(failed > 0 ? 1 : 0);
+	}
+
+}
@@ -0,0 +1,145 @@
+/**
+ *
+ * Streaming reader for the legacy "i,j,state" CSV boards (see BoardIO)
+ * Bytes are read through a FileChannel into one reused buffer and the integers are parsed by
+ * hand, so loading a board allocates nothing per line. Only live cells are written to the grid:
+ * the board's footprint is cleared first, which leaves the same result as setting every cell
+ *
+ **/
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public final class CsvBoardReader implements Closeable {
+
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final File file;
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_BYTES);
+	private final byte[] bytes = buffer.array();
+	private int pos, limit, line;
+
+	// Fields of the line last read, and whether it held nothing but whitespace
+	private final int[] fields = new int[3];
+	private boolean blank;
+
+	// Saved board dimensions from the "length,height" header
+	private final int length, height;
+
+	public CsvBoardReader(File file) throws IOException {
+		this.file = file;
+		channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		try {
+
+			// A UTF-8 byte order mark, as some editors save, is skipped
+			if (nextByte() != 0xEF || nextByte() != 0xBB || nextByte() != 0xBF) pos = 0;
+			if (readLine() < 2 || fields[0] < 1 || fields[1] < 1) throw new IOException("Missing board dimensions in " + file);
+			length = fields[0];
+			height = fields[1];
+		}
+		catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 *  Load the board into grid with its corner at (xShift, yShift), wrapping around the torus.
+	 *  Blank lines are skipped, and the last line may hold no integers at all (old saves end in a
+	 *  stray backspace); any other line without three integers, or a cell outside the saved
+	 *  board's dimensions, is an error.
+	 */
+	public void readInto(LifeGrid grid, int xShift, int yShift) throws IOException {
+		int gridWidth = grid.getWidth(), gridHeight = grid.getHeight();
+		if (length > gridWidth || height > gridHeight)
+			throw new IOException("Saved board " + file + " is larger than the grid");
+		if (length == gridWidth && height == gridHeight) grid.clear();
+		else {
+			for (int i = 0; i < length; i++) {
+				for (int j = 0; j < height; j++) {
+					grid.set((i + xShift) % gridWidth, (j + yShift) % gridHeight, false);
+				}
+			}
+		}
+
+		for (int count = readLine(); count >= 0; count = readLine()) {
+			if (count != 3) {
+				if (blank) continue;
+				// A line without integers may end the board, if only blank lines follow it
+				int at = line;
+				if (count == 0) {
+					do { count = readLine(); } while (count == 0 && blank);
+				}
+				if (count >= 0) throw new IOException(file + ":" + at + ": expected a cell as i,j,state");
+				break;
+			}
+			int i = fields[0], j = fields[1];
+			if (i < 0 || i >= length || j < 0 || j >= height)
+				throw new IOException(file + ":" + line + ": cell " + i + "," + j + " is outside the " + length + "x" + height + " board");
+			if (fields[2] == 1) grid.set((i + xShift) % gridWidth, (j + yShift) % gridHeight, true);
+		}
+	}
+
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 *  Parse the next line's comma-separated integers into fields, returning how many were read
+	 *  (at most fields.length) before the line ended or anything but an integer came up; the rest
+	 *  of the line is skipped. Returns -1 at the end of the file; a byte outside ASCII is an error.
+	 */
+	private int readLine() throws IOException {
+		int c = nextByte();
+		if (c < 0) return -1;
+		line++;
+		int count = 0, value = 0, sign = 1;
+		boolean digits = false, valid = true;
+		blank = true;
+		for (; c >= 0 && c != '\n'; c = nextByte()) {
+			if (c >= 0x80) throw new IOException(file + ":" + line + ": byte 0x" + Integer.toHexString(c) + " is not ASCII");
+			if (c != ' ' && c != '\t' && c != '\r') blank = false;
+			if (!valid) continue;
+			if (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				digits = true;
+			}
+			else if (c == '-' && !digits && sign == 1) sign = -1;
+			else if (c == ',' && digits) {
+				if (count < fields.length) fields[count++] = sign * value;
+				value = 0;
+				sign = 1;
+				digits = false;
+			}
+			else if (c != ' ' && c != '\t' && c != '\r') valid = false;
+		}
+		if (valid && digits && count < fields.length) fields[count++] = sign * value;
+		return count;
+	}
+
+	private int nextByte() throws IOException {
+		if (pos == limit) {
+			buffer.clear();
+			int n;
+			do { n = channel.read(buffer); } while (n == 0);
+			if (n < 0) return -1;
+			pos = 0;
+			limit = n;
+		}
+		return bytes[pos++] & 0xFF;
+	}
+
+}
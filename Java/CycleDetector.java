@@ -0,0 +1,117 @@
+/**
+ *
+ * Finds when a run starts repeating itself, from one 64-bit hash per generation (see LifeGrid.hash)
+ * The hashes of the last `window` generations are kept in a ring and indexed by value in an
+ * open-addressed table, so memory stays fixed however long the run: a repeat of any generation
+ * still in the window is found on the step that repeats it, and longer cycles go unnoticed
+ * Matching hashes are taken as matching boards; with 64 bits a false match is vanishingly unlikely
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class CycleDetector {
+
+	private final int window, mask;
+
+	// Hash of each generation in the window, at generation % window
+	private final long[] ring;
+
+	// Hash -> generation for every generation in the window; EMPTY marks a free slot
+	private static final long EMPTY = -1;
+	private final long[] keys, generations;
+
+	// Generations recorded so far run from first to last
+	private long first, last = -1;
+
+	// Length and first generation of the cycle found (0 and -1 until there is one)
+	private long period, start = -1;
+
+	public CycleDetector(int window) {
+		if (window < 1) throw new IllegalArgumentException("Window must hold at least one generation");
+		this.window = window;
+		ring = new long[window];
+		int capacity = Integer.highestOneBit(Math.max(2, window) * 2 - 1) << 1;
+		mask = capacity - 1;
+		keys = new long[capacity];
+		generations = new long[capacity];
+		Arrays.fill(generations, EMPTY);
+	}
+
+	public int getWindow() {
+		return window;
+	}
+
+	// Forget every recorded generation and any cycle found (call after an edit)
+	public void reset() {
+		Arrays.fill(generations, EMPTY);
+		first = 0;
+		last = -1;
+		period = 0;
+		start = -1;
+	}
+
+	/**
+	 *  Record the hash of a generation, returning the period of the cycle it completes, or 0.
+	 *  Generations must be recorded one after another; a gap starts the window over. Once a cycle
+	 *  is found it stays found (getPeriod) until reset.
+	 */
+	public long record(long generation, long hash) {
+		if (last < 0 || generation != last + 1) {
+			Arrays.fill(generations, EMPTY);
+			first = generation;
+		}
+		last = generation;
+
+		int slot = find(hash);
+		if (generations[slot] != EMPTY && period == 0) {
+			period = generation - generations[slot];
+			start = generations[slot];
+		}
+
+		// Make room by dropping the oldest generation, which moves entries about
+		if (generation - first == window) {
+			remove(ring[(int) (first % window)], first);
+			first++;
+			slot = find(hash);
+		}
+		keys[slot] = hash;
+		generations[slot] = generation;
+		ring[(int) (generation % window)] = hash;
+		return period;
+	}
+
+	// Length of the cycle found, 1 for a still life, or 0 while none has been found
+	public long getPeriod() {
+		return period;
+	}
+
+	// Generation at which the cycle was first seen, or -1
+	public long getStart() {
+		return start;
+	}
+
+	// Slot holding hash, or the free slot where it would go
+	private int find(long hash) {
+		int slot = (int) hash & mask;
+		while (generations[slot] != EMPTY && keys[slot] != hash) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	// Drop the entry for hash if it still points at generation g (it may since have been
+	// overwritten by a later one), shifting back the entries probed past it
+	private void remove(long hash, long g) {
+		int hole = find(hash);
+		if (generations[hole] != g) return;
+		for (int slot = (hole + 1) & mask; generations[slot] != EMPTY; slot = (slot + 1) & mask) {
+			int home = (int) keys[slot] & mask;
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				keys[hole] = keys[slot];
+				generations[hole] = generations[slot];
+				hole = slot;
+			}
+		}
+		generations[hole] = EMPTY;
+	}
+
+}
@@ -8,25 +8,33 @@
 import processing.core.PApplet;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintWriter;
+import java.io.IOException;
 import java.util.Random;
-import java.util.Scanner;
 
 public class GameOfLife extends PApplet {
 	
-	// worldState holds current state, buff is temporary storage for subsequent state
-	private int[][] worldState, buff;
-	private final int ALIVE = 1, DEAD = 0;
+	// Simulation holds the current state (one bit per cell) and steps it on its own thread, which
+	// publishes each generation for drawing; this sketch only draws and edits it
+	private LifeSimulation sim;
+	private SimulationThread<LifeGrid> simThread;
+	private CellRenderer renderer;
+	private final int GRID_COLOR = 0xFF232323;
 	private Random r;
 	
 	// Game parameters
 	private int boardLength = 180;
 	private int boardHeight = 100;
 	private double initProb = 0.15;
+	private String rule = "B3/S23"; // any two-state Moore rule, e.g. "B36/S23" (see LifeRule)
 	private boolean gridLines = true;
+	private boolean sparseStep = true;
+	private boolean unbounded = false; // an infinite plane rather than a torus, seen through the window (pan with shift + arrow keys)
+	private boolean stopOnCycle = false; // pause once the board settles into a still life or oscillator
+	private long historyBytes = 64 << 20; // memory for stepping back through past generations, 0 for none
 	private int dim = 6;
 	private int l = boardLength * dim, h = boardHeight * dim;
+	private double simRate = 25; // generations per second, 0 for as fast as possible
+	private int metricsPort = 0; // serve metrics at localhost:<port>/metrics, 0 for JMX only
 	private String startCondition = ""; //"loadBoard", "rand"
 	
 	// Control variables
@@ -37,6 +45,9 @@ public class GameOfLife extends PApplet {
 	private int rotate = 0;
 	private int eraserX = 8;
 	private int eraserY = 8;
+	private int jumpExp = 10;
+	private long cycleReported = -1;
+	private volatile boolean shiftDown = false; // held, for panning with the arrow keys
 	
 	// Filepaths for input / output csv files
 	private String inPath = "/DIRECTORY/CellularAutomata/logic_Gates/NAND.csv";
@@ -53,9 +64,13 @@ public class GameOfLife extends PApplet {
 	
 	public void setup() {
 		
-		// Initialize arrays and Random object, randomly populate arrays
-		worldState = new int[boardLength][boardHeight];
-		buff = new int[boardLength][boardHeight];
+		// Compile rule, initialize simulation and Random object, randomly populate arrays
+		sim = new LifeSimulation(boardLength, boardHeight, LifeRule.parse(rule));
+		sim.setSparse(sparseStep);
+		sim.setUnbounded(unbounded);
+		if (stopOnCycle) sim.setCycleDetection(4096);
+		sim.setHistory(historyBytes);
+		renderer = new CellRenderer(this, boardLength, boardHeight, dim);
 		r = new Random();
 		
 		switch (startCondition) {
@@ -64,55 +79,35 @@ public class GameOfLife extends PApplet {
 			default: break;
 		}
 		
+		// Start stepping on the simulation thread, publishing copies of the grid for drawing
+		simThread = new SimulationThread<LifeGrid>(sim,
+				new TripleBuffer<LifeGrid>(() -> new LifeGrid(boardLength, boardHeight)),
+				slot -> slot.copyFrom(sim.getGrid()), simRate, new SimulationMetrics("GameOfLife"));
+		simThread.start();
+		MetricsServer.publish(simThread.getMetrics(), metricsPort);
+		
 		frameRate(25);
 		
 	}
 	
 	public void draw() {
+		long frameStart = System.nanoTime();
 		
-		if (gridLines) stroke(35);
-		else noStroke();
+		renderer.setGridLines(gridLines, GRID_COLOR);
 		
-		// Fill buffer array according to current state / rule set
-		for (int i = 0; i < boardLength; i++) {
-			for (int j = 0; j < boardHeight; j++) {
-				if (!pause) fillBuff(i,j);
-			}
-		}
+		// Draw the latest generation the simulation thread published; only changed cells are repainted
+		renderer.setAll(simThread.latest(), CellRenderer.WHITE, CellRenderer.BLACK);
+		renderer.draw();
 		
-		// Update worldState array and draw to GUI
-		for (int i = 0; i < boardLength; i++) {
-			for (int j = 0; j < boardHeight; j++) {
-				fill(0,0,0);
-				if (!pause) worldState[i][j] = buff[i][j];
-				if (worldState[i][j] == ALIVE) fill(255,255,255);
-				rect(i*dim, j*dim, dim, dim);
-			}
+		// Pause once for each cycle the simulation thread finds
+		if (stopOnCycle && sim.getPeriod() > 0 && sim.getCycleStart() != cycleReported) {
+			cycleReported = sim.getCycleStart();
+			println("Period " + sim.getPeriod() + " cycle from generation " + cycleReported);
+			pause = true;
+			simThread.setPaused(true);
+			noLoop();
 		}
-		
-	}
-	
-	// Update buffer array
-	public void fillBuff(int i, int j) {
-		int neighbors, leftInd, rightInd, downInd, upInd;
-		
-		// Get neighbor indices (cells live on a 2D torus)
-		leftInd = (((i - 1) % boardLength + boardLength) % boardLength);
-		rightInd = (((i + 1) % boardLength + boardLength) % boardLength);
-		downInd = (((j - 1) % boardHeight + boardHeight) % boardHeight);
-		upInd = (((j + 1) % boardHeight + boardHeight) % boardHeight);
-		
-		// Calculate neighbor count
-		neighbors = worldState[leftInd][downInd] + worldState[leftInd][j]
-				+ worldState[leftInd][upInd] + worldState[i][downInd]
-				+ worldState[i][upInd] + worldState[rightInd][downInd]
-				+ worldState[rightInd][j] + worldState[rightInd][upInd];
-		
-		// Update bufferArray based on classic rule set
-		if (neighbors < 2) buff[i][j] = DEAD;
-		if (neighbors == 2) buff[i][j] = worldState[i][j];
-		else if (neighbors == 3) buff[i][j] = ALIVE;
-		else if (neighbors > 3) buff[i][j] = DEAD;		
+		simThread.getMetrics().recordFrame(System.nanoTime() - frameStart);
 		
 	}
 	
@@ -121,17 +116,31 @@ public class GameOfLife extends PApplet {
 	 *  randomly populate grid ('r'), place glider gun, eater, or "detector" ('g','e','d'), 
 	 *  undo last placed pattern ('u'), rotate pattern 90 degrees ('t'), flip pattern ('f'),
 	 *  move pattern up/down/left/right (arrow keys), erase block ('o'), toggle grid lines ('x'),
-	 *  toggle individual cell (mouse click).
+	 *  jump ahead 2^jumpExp generations ('j'), step back / forward one generation while paused
+	 *  ('b' / 'n'), pan the window over an unbounded plane (shift + arrow keys), toggle individual
+	 *  cell (mouse click).
+	 *  Controls run between two steps of the simulation thread.
 	 */
 	public void keyPressed() {
+		if (keyCode == SHIFT) shiftDown = true;
+		simThread.edit(this::handleKey);
+	}
+	
+	public void keyReleased() {
+		if (keyCode == SHIFT) shiftDown = false;
+	}
+	
+	public void handleKey() {
 		if (key == RETURN || key == ENTER) {
 			pause = !pause;
+			simThread.setPaused(pause);
 			if (pause) noLoop();
 			else loop();
 		}
 		else if (key == 'c' || key == 'C') {
 			if (pause) {
-				worldState = new int[boardLength][boardHeight];
+				sim.getGrid().clear();
+				sim.invalidate();
 				redraw();
 			}
 		}
@@ -143,7 +152,7 @@ public class GameOfLife extends PApplet {
 		}
 		else if (key == 'r' || key == 'R') {
 			if (pause) {
-				worldState = new int[boardLength][boardHeight];
+				sim.getGrid().clear();
 				fillRandom();
 				redraw();
 			}
@@ -166,6 +175,12 @@ public class GameOfLife extends PApplet {
 		else if (key == 'f' || key == 'F') {
 			flip = !flip;
 		}
+		else if ((keyCode == UP || keyCode == DOWN || keyCode == LEFT || keyCode == RIGHT)
+				&& shiftDown && sim.isUnbounded()) {
+			int dx = keyCode == LEFT ? -1 : keyCode == RIGHT ? 1 : 0, dy = keyCode == UP ? -1 : keyCode == DOWN ? 1 : 0;
+			sim.setView(sim.getViewX() + dx * boardLength / 4, sim.getViewY() + dy * boardHeight / 4);
+			redraw();
+		}
 		else if (keyCode == UP || keyCode == DOWN || keyCode == LEFT || keyCode == RIGHT) {
 			loadShape(lastI, lastJ, lastShape, rotate, flip, true);
 			if (keyCode == DOWN) loadShape(lastI, (lastJ+1)%boardHeight, 
@@ -186,14 +201,32 @@ public class GameOfLife extends PApplet {
 		else if (key == 'x' || key == 'X') {
 			gridLines = !gridLines;
 		}
+		else if (key == 'j' || key == 'J') {
+			sim.jump(jumpExp);
+			redraw();
+		}
+		else if (key == 'b' || key == 'B') {
+			if (pause && sim.seek(sim.getGeneration() - 1)) redraw();
+		}
+		else if (key == 'n' || key == 'N') {
+			if (pause) {
+				if (!sim.seek(sim.getGeneration() + 1)) sim.step();
+				redraw();
+			}
+		}
 	}
 	
 	// Manually toggle individual cells (game must be paused)
 	public void mousePressed() {
+		simThread.edit(this::toggleCell);
+	}
+	
+	public void toggleCell() {
 		if (pause) {
 			int x =  (int) (map(mouseX, 0, l, 0, boardLength));
 			int y =  (int) (map(mouseY, 0, h, 0, boardHeight));
-			worldState[x][y] = (worldState[x][y] + 1) % 2;
+			sim.getGrid().toggle(x, y);
+			sim.invalidate();
 			System.out.println("i,j: " + x + ", " + y);
 			redraw();
 		}
@@ -201,51 +234,69 @@ public class GameOfLife extends PApplet {
 	
 	// Randomly populate worldState array
 	public void fillRandom() {
-		for (int i = 0; i < boardLength; i++) {
-			for (int j = 0; j < boardHeight; j++) {
-				if (r.nextFloat() < initProb) worldState[i][j] = ALIVE;				
-			}
-		}
+		sim.fillRandom(r, initProb);
 	}
 	
-	// Loads saved grid from CSV file
+	// Loads saved grid from CSV, binary (.bin) or RLE (.rle) file
 	public void loadBoard() {
-		Scanner scan = null;
-		try { scan = new Scanner(new File(inPath)); }
-		catch (FileNotFoundException e) { e.printStackTrace(); }
-		String[] data = scan.nextLine().split(",");
-		int xShift = 0, yShift = 0;
-		if (Integer.parseInt(data[0]) < boardLength && Integer.parseInt(data[1]) < boardHeight) {
-			xShift = (int) (map(mouseX, 0, l, 0, boardLength));;
-			yShift = (int) (map(mouseY, 0, h, 0, boardHeight));;
+		String name = inPath.toLowerCase();
+		if (name.endsWith(".bin") || name.endsWith(".rle")) {
+			loadGrid();
+			return;
 		}
-		if (Integer.parseInt(data[0]) <= boardLength && Integer.parseInt(data[1]) <= boardHeight) {
-			while (scan.hasNextLine()) {
-				data = scan.nextLine().split(",");
-				if (data.length < 3) break;
-				worldState[(Integer.parseInt(data[0])+xShift)%boardLength][(Integer.parseInt(data[1])+yShift)%boardLength]
-						= Integer.parseInt(data[2]);
+		try (CsvBoardReader in = new CsvBoardReader(new File(inPath))) {
+			int xShift = 0, yShift = 0;
+			if (in.getLength() < boardLength && in.getHeight() < boardHeight) {
+				xShift = (int) (map(mouseX, 0, l, 0, boardLength));
+				yShift = (int) (map(mouseY, 0, h, 0, boardHeight));
 			}
-			redraw();
+			if (in.getLength() <= boardLength && in.getHeight() <= boardHeight) {
+				in.readInto(sim.getGrid(), xShift, yShift);
+				sim.invalidate();
+				redraw();
+			}
+			else System.out.println("Saved board has incorrect dimensions");
 		}
-		else System.out.println("Saved board has incorrect dimensions");
+		catch (IOException e) { e.printStackTrace(); }
 	}
 	
-	// Saves grid to CSV file
-	public void saveBoard() {
-		File file = null;
-		PrintWriter print = null;
-		file = new File(outPath);
-		try { print = new PrintWriter(file); } 
-		catch (FileNotFoundException e) { e.printStackTrace(); }
-		print.println(boardLength + "," + boardHeight);
-		for (int i = 0; i < boardLength; i++) {
-			for (int j = 0; j < boardHeight ;j++) {
-				print.println(i + "," + j + "," + worldState[i][j]);
+	// Loads a binary or RLE board; smaller boards are placed at the cursor, like CSV boards
+	public void loadGrid() {
+		LifeGrid saved = null;
+		LifeRule savedRule = null;
+		try {
+			saved = BoardIO.read(new File(inPath));
+			savedRule = BoardIO.readRule(new File(inPath));
+		}
+		catch (IOException e) { e.printStackTrace(); return; }
+		if (savedRule != null && !savedRule.equals(sim.getRule()))
+			System.out.println("Saved board is a " + savedRule + " pattern; running it as " + sim.getRule());
+		LifeGrid worldState = sim.getGrid();
+		if (saved.getWidth() == boardLength && saved.getHeight() == boardHeight) worldState.copyFrom(saved);
+		else if (saved.getWidth() <= boardLength && saved.getHeight() <= boardHeight) {
+			int xShift = 0, yShift = 0;
+			if (saved.getWidth() < boardLength && saved.getHeight() < boardHeight) {
+				xShift = (int) (map(mouseX, 0, l, 0, boardLength));
+				yShift = (int) (map(mouseY, 0, h, 0, boardHeight));
+			}
+			for (int i = 0; i < saved.getWidth(); i++) {
+				for (int j = 0; j < saved.getHeight(); j++) {
+					worldState.set((i+xShift)%boardLength, (j+yShift)%boardHeight, saved.get(i, j));
+				}
 			}
 		}
-		print.print("\b");
-		print.close();
+		else {
+			System.out.println("Saved board has incorrect dimensions");
+			return;
+		}
+		sim.invalidate();
+		redraw();
+	}
+	
+	// Saves grid to CSV, binary (.bin) or RLE (.rle) file
+	public void saveBoard() {
+		try { BoardIO.write(sim.getGrid(), new File(outPath), sim.getRule()); }
+		catch (IOException e) { e.printStackTrace(); }
 	}
 	
 	// Generate a pattern at specified coordinates, or clear a grid the size of the pattern
@@ -253,32 +304,25 @@ public class GameOfLife extends PApplet {
 		lastI = i; 
 		lastJ = j; 
 		lastShape = shape;
-		int[][] shapeArr = null;
-		if (shape == 'g' || shape == 'G') shapeArr = Shapes.getGliderGun(); 
-		else if (shape == 'e' || shape == 'E') shapeArr = Shapes.getEater();
-		else if (shape == 'd' || shape == 'D') shapeArr = Shapes.getDetector();
-		for (int k = 0; k < shapeArr.length; k++) {
-			for (int n = 0; n < shapeArr[0].length; n++) {
-				int curr = shapeArr[k][n];
-				if (flip) curr = shapeArr[shapeArr.length - k - 1][n];
-				if (clear) curr = DEAD;
-				if (rotate == 0) worldState[(i+k)%boardLength][(j+n)%boardHeight] = curr;
-				else if (rotate == 1) worldState[(i+n)%boardLength][(j+k)%boardHeight] = curr;
-				else if (rotate == 2)
-					worldState[((i-k)%boardLength+boardLength)%boardLength][((j-n)%boardHeight+boardHeight)%boardHeight] = curr;
-				else if (rotate == 3)
-					worldState[((i-n)%boardLength+boardLength)%boardLength][((j-k)%boardHeight+boardHeight)%boardHeight] = curr;
-			}
-		}
+		Pattern pattern = null;
+		if (shape == 'g' || shape == 'G') pattern = PatternLibrary.GLIDER_GUN;
+		else if (shape == 'e' || shape == 'E') pattern = PatternLibrary.EATER;
+		else if (shape == 'd' || shape == 'D') pattern = PatternLibrary.DETECTOR;
+		if (pattern == null) return;
+		int orientation = Pattern.orientation(rotate, flip);
+		if (clear) pattern.erase(sim.getGrid(), i, j, orientation);
+		else pattern.place(sim.getGrid(), i, j, orientation);
+		sim.invalidate();
 	}
 	
 	// Erase cells
 	public void erase(int x, int y, int dI, int dJ) {
 		for (int i = 0; i < dI; i++) {
 			for (int j = 0; j < dJ; j++) {
-				worldState[(x+i)%boardLength][(y+j)%boardHeight] = DEAD;
+				sim.getGrid().set((x+i)%boardLength, (y+j)%boardHeight, false);
 			}
 		}	
+		sim.invalidate();
 	}
 		
 }
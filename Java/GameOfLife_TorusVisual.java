@@ -5,18 +5,24 @@
  **/
 
 import processing.core.PApplet;
-import processing.core.PVector;
+import processing.core.PImage;
+import processing.core.PShape;
+import processing.opengl.PGraphicsOpenGL;
 import java.util.Random;
 
 public class GameOfLife_TorusVisual extends PApplet {
 	
-	// WorldState holds current state, buff is temporary storage for subsequent state
-	private int[][] worldState, buff;
-	private final int ALIVE = 1, DEAD = 0; 
+	// Simulation holds the current state and steps it on its own thread, which publishes each
+	// generation for drawing; this sketch only draws and edits it
+	private LifeSimulation sim;
+	private SimulationThread<LifeGrid> simThread;
 	private Random r;
 	
-	// Torus parameters / data
-	private PVector vertices[][];
+	// Torus parameters / data: the mesh is built once and textured with one pixel per cell
+	private PShape mesh;
+	private PImage cells;
+	private boolean cellsChanged;
+	private final int POINT_SAMPLING = 2, BLACK = 0xFF000000, WHITE = 0xFFFFFFFF;
 	private float majorRad = 150;
 	private float minorRad = 80;
 	private float rotX, rotY, rotZ;
@@ -25,9 +31,12 @@ public class GameOfLife_TorusVisual extends PApplet {
 	private int boardLength = 220;
 	private int boardHeight = 150;
 	private double initProb = 0.15;
+	private String rule = "B3/S23"; // any two-state Moore rule, e.g. "B36/S23" (see LifeRule)
 	private boolean gridLines = false;
 	private String startCondition = "rand";
 	private int l = (int) (boardLength * 3), h = (int) (boardHeight * 3.5);
+	private double simRate = 15; // generations per second, 0 for as fast as possible
+	private int metricsPort = 0; // serve metrics at localhost:<port>/metrics, 0 for JMX only
 	
 	// Control variable
 	private boolean pause = false;
@@ -47,20 +56,24 @@ public class GameOfLife_TorusVisual extends PApplet {
 	
 	public void setup() {
 		
-		// Initialize arrays and Random object, randomly populate arrays
-		worldState = new int[boardLength][boardHeight];
-		buff = new int[boardLength][boardHeight];
-		vertices = new PVector[boardLength][boardHeight];
+		// Compile rule, initialize simulation, vertices and Random object, randomly populate arrays
+		sim = new LifeSimulation(boardLength, boardHeight, LifeRule.parse(rule));
 		r = new Random();
 		
 		switch (startCondition) {
 			case "rand": fillRandom(); break;
 			default: break;
 		}	
-		createVertices();
+		createMesh();
+		
+		// Start stepping on the simulation thread, publishing copies of the state for drawing
+		simThread = new SimulationThread<LifeGrid>(sim,
+				new TripleBuffer<LifeGrid>(() -> new LifeGrid(boardLength, boardHeight)),
+				slot -> slot.copyFrom(sim.getGrid()), simRate, new SimulationMetrics("GameOfLife_TorusVisual"));
+		simThread.start();
+		MetricsServer.publish(simThread.getMetrics(), metricsPort);
 		
 		frameRate(15);
-		if (!gridLines) noStroke();
 		rotX = PI/350;
 		rotY = PI/400;
 		rotZ = PI/200;
@@ -68,6 +81,7 @@ public class GameOfLife_TorusVisual extends PApplet {
 	}
 	
 	public void draw() {
+		long frameStart = System.nanoTime();
 	
 		lights();
 		background(245, 245, 255);
@@ -79,67 +93,35 @@ public class GameOfLife_TorusVisual extends PApplet {
 		rotateY(frames*rotY);
 		rotateZ(frames*rotZ);
 		
-		// Fill buffer array according to current state / rule set
-		for (int i = 0; i < boardLength; i++) {
-			for (int j = 0; j < boardHeight; j++) {
-				if (!pause) fillBuff(i,j);
-			}
-		}
-		
-		// Update worldState array and draw to GUI
-		int upInd, rightInd;
+		// Draw the latest generation the simulation thread published: recolour the cell texture
+		// and draw the retained mesh
+		LifeGrid worldState = simThread.latest();
 		for (int i = 0; i < boardLength ; i++) {
 			for (int j = 0; j < boardHeight; j++) {
-				fill(0,0,0);
-				if (!pause) worldState[i][j] = buff[i][j];
-				if (worldState[i][j] == ALIVE) fill(255,255,255);
-				
-				rightInd = (i + 1) % boardLength;
-				upInd = (j + 1) % boardHeight;
-			    
-				beginShape(QUAD_STRIP);
-				vertex(vertices[i][j].x, vertices[i][j].y, vertices[i][j].z);
-				vertex(vertices[i][upInd].x, vertices[i][upInd].y, vertices[i][upInd].z);
-				vertex(vertices[rightInd][j].x, vertices[rightInd][j].y, vertices[rightInd][j].z);
-				vertex(vertices[rightInd][upInd].x, vertices[rightInd][upInd].y, vertices[rightInd][upInd].z);
-				endShape();
+				setCell(i, j, worldState.get(i, j) ? WHITE : BLACK);
 			}	
 		}
+		if (cellsChanged) cells.updatePixels();
+		cellsChanged = false;
+		shape(mesh);
+		simThread.getMetrics().recordFrame(System.nanoTime() - frameStart);
 		
 	}
 	
-	// Update buffer array
-	public void fillBuff(int i, int j) {
-		int neighbors, leftInd, rightInd, downInd, upInd;
-		
-		// Get neighbor indices (cells live on a 2D torus)
-		leftInd = (((i - 1) % boardLength + boardLength) % boardLength);
-		rightInd = (((i + 1) % boardLength + boardLength) % boardLength);
-		downInd = (((j - 1) % boardHeight + boardHeight) % boardHeight);
-		upInd = (((j + 1) % boardHeight + boardHeight) % boardHeight);
-		
-		// Calculate neighbor count
-		neighbors = worldState[leftInd][downInd] + worldState[leftInd][j]
-				+ worldState[leftInd][upInd] + worldState[i][downInd]
-				+ worldState[i][upInd] + worldState[rightInd][downInd]
-				+ worldState[rightInd][j] + worldState[rightInd][upInd];
-		
-		// Update bufferArray based on classic rule set
-		if (neighbors < 2) buff[i][j] = DEAD;
-		if (neighbors == 2) buff[i][j] = worldState[i][j];
-		else if (neighbors == 3) buff[i][j] = ALIVE;
-		else if (neighbors > 3) buff[i][j] = DEAD;
-	}
-	
 	/**
 	 *  User controls: pause ('enter'/'return'), clear grid ('c'), randomly populate grid ('r'),
 	 *  place glider gun, eater, or "detector" ('g','e','d'), rotate pattern 90 degrees ('t'), 
 	 *  flip pattern ('f')
-	 *  
+	 *  Controls run between two steps of the simulation thread
 	 */
 	public void keyPressed(){
+		simThread.edit(this::handleKey);
+	}
+	
+	public void handleKey() {
 		if (key == RETURN || key == ENTER) {
 			pause = !pause;
+			simThread.setPaused(pause);
 			if (pause) {
 				currFrameCount = frameCount;
 				noLoop();
@@ -148,13 +130,14 @@ public class GameOfLife_TorusVisual extends PApplet {
 		}
 		else if (key == 'c' || key == 'C') {
 			if (pause) {
-				worldState = new int[boardLength][boardHeight];
+				sim.getGrid().clear();
+				sim.invalidate();
 				redraw();
 			}
 		}
 		else if (key == 'r' || key == 'R') {
 			if (pause) {
-				worldState = new int[boardLength][boardHeight];
+				sim.getGrid().clear();
 				fillRandom();
 				redraw();
 			}
@@ -187,11 +170,7 @@ public class GameOfLife_TorusVisual extends PApplet {
 	
 	// Randomly populate worldState array
 	public void fillRandom() {
-		for (int i = 0; i < boardLength; i++) {
-			for (int j = 0; j < boardHeight; j++) {
-				if (r.nextFloat() < initProb) worldState[i][j] = ALIVE;				
-			}
-		}
+		sim.fillRandom(r, initProb);
 	}
 	
 	// Generate a pattern at specified coordinates, or clear a grid the size of the pattern
@@ -199,39 +178,31 @@ public class GameOfLife_TorusVisual extends PApplet {
 		lastI = i; 
 		lastJ = j; 
 		lastShape = shape;
-		int[][] shapeArr = null;
-		if (shape == 'g' || shape == 'G') shapeArr = Shapes.getGliderGun(); 
-		else if (shape == 'e' || shape == 'E') shapeArr = Shapes.getEater();
-		else if (shape == 'd' || shape == 'D') shapeArr = Shapes.getDetector();
-		for (int k = 0; k < shapeArr.length; k++) {
-			for (int n = 0; n < shapeArr[0].length; n++) {
-				int curr = shapeArr[k][n];
-				if (flip) curr = shapeArr[shapeArr.length - k - 1][n];
-				if (clear) curr = DEAD;
-				if (rotate == 0) worldState[(i+k)%boardLength][(j+n)%boardHeight] = curr;
-				else if (rotate == 1) worldState[(i+n)%boardLength][(j+k)%boardHeight] = curr;
-				else if (rotate == 2)
-					worldState[((i-k)%boardLength+boardLength)%boardLength][((j-n)%boardHeight+boardHeight)%boardHeight] = curr;
-				else if (rotate == 3)
-					worldState[((i-n)%boardLength+boardLength)%boardLength][((j-k)%boardHeight+boardHeight)%boardHeight] = curr;
-			}
-		}
+		Pattern pattern = null;
+		if (shape == 'g' || shape == 'G') pattern = PatternLibrary.GLIDER_GUN;
+		else if (shape == 'e' || shape == 'E') pattern = PatternLibrary.EATER;
+		else if (shape == 'd' || shape == 'D') pattern = PatternLibrary.DETECTOR;
+		if (pattern == null) return;
+		int orientation = Pattern.orientation(rotate, flip);
+		if (clear) pattern.erase(sim.getGrid(), i, j, orientation);
+		else pattern.place(sim.getGrid(), i, j, orientation);
+		sim.invalidate();
+	}
+	
+	// Build the torus mesh once; each frame only the cell texture changes (nearest texel, no blending)
+	public void createMesh() {
+		hint(DISABLE_TEXTURE_MIPMAPS);
+		((PGraphicsOpenGL) g).textureSampling(POINT_SAMPLING);
+		cells = createImage(boardLength, boardHeight, RGB);
+		mesh = TorusGeometry.mesh(this, cells, majorRad, minorRad, gridLines);
 	}
 	
-	// Create / store vertex data for torus
-	public void createVertices() {
-		float tempRad, angle, innerAngle, tempY, tempX, tempZ;
-		for (int j = 0; j < boardHeight; j++) {
-			angle = radians(((float) j / (float) boardHeight) * 360.0f); 
-			tempRad = minorRad * cos(angle) + majorRad;
-			tempY = minorRad * sin(angle);
-			
-			for (int i = 0; i < boardLength; i++) {
-				innerAngle = radians(((float) i / (float) boardLength) * 360.0f);
-				tempX = tempRad * cos(innerAngle);
-				tempZ = tempRad * sin(innerAngle);
-				vertices[i][j] = new PVector(tempX, tempY, tempZ);
-			}				
+	// Write a cell's colour into the texture, noting whether anything needs uploading
+	public void setCell(int i, int j, int color) {
+		int k = j * boardLength + i;
+		if (cells.pixels[k] != color) {
+			cells.pixels[k] = color;
+			cellsChanged = true;
 		}
 	}
 		
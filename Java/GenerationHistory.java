@@ -0,0 +1,245 @@
+/**
+ *
+ * Recent Life generations, kept for stepping backwards within a fixed amount of memory
+ * Each generation is stored as its XOR with the one before (just the words that changed), with a
+ * whole generation as a keyframe every so often. Going back or forward one generation applies one
+ * of these deltas, and any generation held can be rebuilt from the nearest keyframe or neighbour
+ * Words are written sparsely: the gap since the last one written, a mask of its non-zero bytes,
+ * then those bytes, so a word with a few cells changing takes two or three bytes rather than eight
+ * The oldest generations are dropped, a keyframe's worth at a time, to stay under the memory cap
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class GenerationHistory {
+
+	// Rough bytes an array costs beyond its contents, counted against the cap
+	private static final int ARRAY_OVERHEAD = 16;
+
+	private final int width, height;
+	private final long maxBytes;
+	private final int keyframeInterval;
+
+	// Generation oldest + k is held at (head + k) % capacity: deltas[] turns the generation before
+	// it into it (null for the oldest) and keyframes[] is the whole generation (null between keyframes)
+	private byte[][] deltas = new byte[64][], keyframes = new byte[64][];
+	private int head, count;
+	private long oldest;
+	private long bytes;
+
+	// Copy of the newest generation held, which the next delta is taken against
+	private final LifeGrid newest;
+
+	// Encoding buffer, grown as needed
+	private byte[] buffer = new byte[256];
+
+	// Keep at most maxBytes of past generations, with a keyframe at least every keyframeInterval
+	public GenerationHistory(int width, int height, long maxBytes, int keyframeInterval) {
+		if (maxBytes <= 0 || keyframeInterval < 1) throw new IllegalArgumentException("History needs memory and a keyframe interval");
+		this.width = width;
+		this.height = height;
+		this.maxBytes = maxBytes;
+		this.keyframeInterval = keyframeInterval;
+		newest = new LifeGrid(width, height);
+	}
+
+	public boolean isEmpty() {
+		return count == 0;
+	}
+
+	public long getOldest() {
+		return oldest;
+	}
+
+	public long getNewest() {
+		return oldest + count - 1;
+	}
+
+	public boolean contains(long generation) {
+		return count > 0 && generation >= oldest && generation <= getNewest();
+	}
+
+	// Bytes held, including the arrays' own overhead but not the copy of the newest generation
+	public long getBytes() {
+		return bytes;
+	}
+
+	public void clear() {
+		Arrays.fill(deltas, null);
+		Arrays.fill(keyframes, null);
+		head = 0;
+		count = 0;
+		bytes = 0;
+	}
+
+	/**
+	 *  Record the grid as the given generation. Straight after the newest this adds one delta;
+	 *  a generation already held replaces it and drops every later one (the run went back and
+	 *  took a different path); anything else starts the history over.
+	 */
+	public void record(LifeGrid grid, long generation) {
+		if (grid.getWidth() != width || grid.getHeight() != height)
+			throw new IllegalArgumentException("Grid dimensions differ");
+		if (count > 0 && generation > oldest && generation <= getNewest() + 1) truncate(generation - 1);
+		else clear();
+
+		if (count == 0) {
+			oldest = generation;
+			newest.copyFrom(grid);
+			push(null, encode(newest.getWords(), null));
+			return;
+		}
+
+		// The new delta, then a keyframe if the interval is up, if replaying the deltas since the
+		// last would now cost more than reading a keyframe, or if they hold half the memory cap
+		byte[] delta = encode(grid.getWords(), newest.getWords());
+		newest.copyFrom(grid);
+		int k = count - 1;
+		long segment = cost(delta);
+		while (keyframes[at(k)] == null) segment += cost(deltas[at(k--)]);
+		byte[] keyframe = null;
+		if (count - k >= keyframeInterval || segment > cost(keyframes[at(k)]) || segment + cost(keyframes[at(k)]) > maxBytes / 2)
+			keyframe = encode(newest.getWords(), null);
+		push(delta, keyframe);
+		evict();
+	}
+
+	// Drop every generation after the given one
+	public void truncate(long generation) {
+		long[] words = newest.getWords();
+		while (count > 0 && getNewest() > generation) {
+			int slot = at(count - 1);
+			if (count > 1) apply(deltas[slot], words);
+			bytes -= cost(deltas[slot]) + cost(keyframes[slot]);
+			deltas[slot] = keyframes[slot] = null;
+			count--;
+		}
+	}
+
+	// Put a held generation into grid
+	public void restore(long generation, LifeGrid grid) {
+		seek(grid, -1, generation);
+	}
+
+	/**
+	 *  Turn grid, holding generation from (or -1 if unknown), into generation to. Takes the
+	 *  shortest of three routes: the deltas between the two, forward from the keyframe at or
+	 *  before to, or back from the newest generation.
+	 */
+	public void seek(LifeGrid grid, long from, long to) {
+		if (!contains(to) || (from >= 0 && !contains(from)))
+			throw new IllegalArgumentException("Generation " + to + " is not held (" + oldest + " to " + getNewest() + ")");
+		int target = (int) (to - oldest), last = count - 1;
+		int key = target;
+		while (keyframes[at(key)] == null) key--;
+		long[] words = grid.getWords();
+
+		long direct = from >= 0 ? Math.abs(to - from) : Long.MAX_VALUE;
+		if (direct <= target - key + 1 && direct <= last - target + 1) {
+			for (int k = (int) (from - oldest) + 1; k <= target; k++) apply(deltas[at(k)], words);
+			for (int k = (int) (from - oldest); k > target; k--) apply(deltas[at(k)], words);
+		}
+		else if (target - key <= last - target) {
+			grid.clear();
+			apply(keyframes[at(key)], words);
+			for (int k = key + 1; k <= target; k++) apply(deltas[at(k)], words);
+		}
+		else {
+			grid.copyFrom(newest);
+			for (int k = last; k > target; k--) apply(deltas[at(k)], words);
+		}
+	}
+
+	private int at(int k) {
+		return (head + k) % deltas.length;
+	}
+
+	private void push(byte[] delta, byte[] keyframe) {
+		if (count == deltas.length) {
+			byte[][] d = new byte[count * 2][], f = new byte[count * 2][];
+			for (int k = 0; k < count; k++) {
+				d[k] = deltas[at(k)];
+				f[k] = keyframes[at(k)];
+			}
+			deltas = d;
+			keyframes = f;
+			head = 0;
+		}
+		int slot = at(count++);
+		deltas[slot] = delta;
+		keyframes[slot] = keyframe;
+		bytes += cost(delta) + cost(keyframe);
+	}
+
+	// Drop the oldest keyframe and the deltas after it while over the cap, but never the newest keyframe
+	private void evict() {
+		while (bytes > maxBytes) {
+			int next = 1;
+			while (next < count && keyframes[at(next)] == null) next++;
+			if (next == count) return;
+			for (int k = 0; k < next; k++) {
+				bytes -= cost(deltas[head]) + cost(keyframes[head]);
+				deltas[head] = keyframes[head] = null;
+				head = (head + 1) % deltas.length;
+			}
+			count -= next;
+			oldest += next;
+
+			// Nothing comes before the new oldest generation, so its delta is never applied
+			bytes -= cost(deltas[head]);
+			deltas[head] = null;
+		}
+	}
+
+	private static long cost(byte[] data) {
+		return data == null ? 0 : data.length + ARRAY_OVERHEAD;
+	}
+
+	// Words (XOR previous, if given) in the sparse format described above
+	private byte[] encode(long[] words, long[] previous) {
+		int n = 0, last = -1;
+		for (int i = 0; i < words.length; i++) {
+			long x = previous == null ? words[i] : words[i] ^ previous[i];
+			if (x == 0) continue;
+			if (buffer.length - n < 14) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			for (int gap = i - last - 1; ; gap >>>= 7) {
+				if (gap < 0x80) {
+					buffer[n++] = (byte) gap;
+					break;
+				}
+				buffer[n++] = (byte) (gap | 0x80);
+			}
+			int maskAt = n++, mask = 0;
+			for (int b = 0; b < 8; b++, x >>>= 8) {
+				if ((x & 0xFF) == 0) continue;
+				mask |= 1 << b;
+				buffer[n++] = (byte) x;
+			}
+			buffer[maskAt] = (byte) mask;
+			last = i;
+		}
+		return Arrays.copyOf(buffer, n);
+	}
+
+	// XOR encoded words into words
+	private static void apply(byte[] data, long[] words) {
+		int n = 0, i = -1;
+		while (n < data.length) {
+			int gap = 0;
+			for (int shift = 0; ; shift += 7) {
+				int b = data[n++];
+				gap |= (b & 0x7F) << shift;
+				if (b >= 0) break;
+			}
+			i += gap + 1;
+			int mask = data[n++] & 0xFF;
+			long x = 0;
+			for (int b = 0; b < 8; b++) {
+				if ((mask & (1 << b)) != 0) x |= (data[n++] & 0xFFL) << (8 * b);
+			}
+			words[i] ^= x;
+		}
+	}
+
+}
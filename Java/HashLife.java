@@ -0,0 +1,289 @@
+/**
+ *
+ * HashLife: advances a LifeGrid by 2^k generations at once using a canonicalized quadtree
+ * Every distinct square of cells is stored once (hash-consed) and remembers its own RESULT, the
+ * center half of the square 2^(level-2) generations on, so periodic patterns such as the
+ * glider-gun logic gates cost little more than their first period
+ *
+ * The torus is handled exactly: a W x H torus behaves like the plane tiled with copies of the
+ * board, and every square of that tiling is fully determined by its level and its position
+ * modulo the board size, so building it never takes more than one node per cell per level
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class HashLife {
+
+	// Quadtree node; level 0 nodes are single cells, a level n node covers 2^n x 2^n cells
+	private static final class Node {
+
+		final int level;
+		final Node nw, ne, sw, se;
+		final long population;
+		final int hash;
+
+		// Memoized RESULT, and the next node in this node's hash bucket
+		Node result;
+		Node next;
+
+		Node(int level, Node nw, Node ne, Node sw, Node se, long population, int hash) {
+			this.level = level;
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			this.population = population;
+			this.hash = hash;
+		}
+
+	}
+
+	// Thrown by join() once the cache passes maxNodes in the middle of a jump; shared, without a
+	// stack trace, as it is caught straight away
+	private static final class CacheFull extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		CacheFull() {
+			super(null, null, false, false);
+		}
+	}
+
+	private static final CacheFull CACHE_FULL = new CacheFull();
+
+	private final LifeRule rule;
+	private final int maxNodes;
+
+	// Whether join() enforces maxNodes; off while a single generation's square is retried
+	private boolean limited = true;
+
+	// Hash-consed node table, chained through Node.next
+	private Node[] table;
+	private int size;
+	private Node dead, live;
+
+	// Next generation of the center 2x2 of every 4x4 block, indexed by its 16 cells (bit 4*y + x)
+	private final byte[] center = new byte[1 << 16];
+
+	// Squares of the tiled plane built during the current jump: their index in tileNodes, keyed by
+	// level and torus position
+	private final LongIntMap tiles = new LongIntMap();
+	private Node[] tileNodes = new Node[64];
+
+	public HashLife(LifeRule rule) {
+		this(rule, 1 << 22);
+	}
+
+	public HashLife(LifeRule rule, int maxNodes) {
+		if (!rule.isLifeLike()) throw new IllegalArgumentException("HashLife only runs two-state Moore rules, not " + rule);
+		this.rule = rule;
+		this.maxNodes = maxNodes;
+		for (int cells = 0; cells < center.length; cells++) center[cells] = (byte) centerOf(cells);
+		reset();
+	}
+
+	// Number of nodes currently cached
+	public int size() {
+		return size;
+	}
+
+	// Drop every cached node and memoized result
+	public void reset() {
+		table = new Node[1 << 16];
+		size = 0;
+		dead = new Node(0, null, null, null, null, 0, 0);
+		live = new Node(0, null, null, null, null, 1, 1);
+	}
+
+	/**
+	 *  Advance src by 2^k generations on its torus, writing the result into dst (which may be
+	 *  src itself). The cache is held to maxNodes throughout: when it passes that during the jump
+	 *  it is emptied and the square being worked on is built again from the board (results
+	 *  already found are kept, as plain trees). If one square needs more than maxNodes even from
+	 *  an empty cache, the jump is made as two jumps of 2^(k-1) instead, down to single
+	 *  generations, which are let past the limit so that the jump always finishes. Returns the
+	 *  live cells written to dst.
+	 */
+	public long jump(LifeGrid src, LifeGrid dst, int k) {
+		if (k < 0 || k > 60) throw new IllegalArgumentException("Jump exponent must be in [0, 60]");
+		if (size > maxNodes) reset();
+
+		int width = src.getWidth(), height = src.getHeight();
+		long block = 1L << (k + 1);
+
+		// Each block of the board is the RESULT of the level k+2 square centered on it
+		Node[] results = new Node[(int) (((width - 1) / block + 1) * ((height - 1) / block + 1))];
+		int n = 0;
+		try {
+			for (long y = 0; y < height; y += block) {
+				for (long x = 0; x < width; x += block) {
+					results[n++] = resultAt(src, k + 2, x - block / 2, y - block / 2, k == 0);
+				}
+			}
+		}
+		catch (CacheFull e) {
+			reset();
+			clearTiles();
+			jump(src, dst, k - 1);
+			return jump(dst, dst, k - 1);
+		}
+		clearTiles();
+
+		dst.clear();
+		n = 0;
+		long population = 0;
+		for (long y = 0; y < height; y += block) {
+			for (long x = 0; x < width; x += block) {
+				population += write(results[n++], x, y, dst);
+			}
+		}
+		return population;
+	}
+
+	// RESULT of the square of the tiled plane with top-left corner (x, y), starting again on an
+	// empty cache if it fills up on the way; a second time, it throws CacheFull unless unlimited
+	private Node resultAt(LifeGrid grid, int level, long x, long y, boolean unlimited) {
+		try {
+			return result(build(grid, level, x, y));
+		}
+		catch (CacheFull e) {
+			reset();
+			clearTiles();
+			limited = !unlimited;
+			try {
+				return result(build(grid, level, x, y));
+			}
+			finally {
+				limited = true;
+			}
+		}
+	}
+
+	private void clearTiles() {
+		Arrays.fill(tileNodes, 0, tiles.size(), null);
+		tiles.clear();
+	}
+
+	// Build the square of the tiled plane with top-left corner (x, y)
+	private Node build(LifeGrid grid, int level, long x, long y) {
+		int width = grid.getWidth(), height = grid.getHeight();
+		int xm = (int) Math.floorMod(x, (long) width), ym = (int) Math.floorMod(y, (long) height);
+		if (level == 0) return grid.get(xm, ym) ? live : dead;
+
+		long key = ((long) level * width + xm) * height + ym;
+		int index = tiles.get(key);
+		if (index >= 0) return tileNodes[index];
+		long half = 1L << (level - 1);
+		Node node = join(build(grid, level - 1, x, y), build(grid, level - 1, x + half, y),
+				build(grid, level - 1, x, y + half), build(grid, level - 1, x + half, y + half));
+		index = tiles.size();
+		if (index == tileNodes.length) tileNodes = Arrays.copyOf(tileNodes, 2 * index);
+		tileNodes[index] = node;
+		tiles.put(key, index);
+		return node;
+	}
+
+	// Copy the live cells of node, with top-left corner (x, y), into the grid (clipped to its
+	// bounds), returning how many were inside
+	private long write(Node node, long x, long y, LifeGrid grid) {
+		if (node.population == 0 || x >= grid.getWidth() || y >= grid.getHeight()) return 0;
+		if (node.level == 0) {
+			grid.set((int) x, (int) y, true);
+			return 1;
+		}
+		long half = 1L << (node.level - 1);
+		return write(node.nw, x, y, grid) + write(node.ne, x + half, y, grid)
+				+ write(node.sw, x, y + half, grid) + write(node.se, x + half, y + half, grid);
+	}
+
+	// Canonical node with the given quadrants
+	private Node join(Node nw, Node ne, Node sw, Node se) {
+		int hash = nw.hash;
+		hash = hash * 1000003 + ne.hash;
+		hash = hash * 1000003 + sw.hash;
+		hash = hash * 1000003 + se.hash;
+		hash ^= hash >>> 16;
+
+		int bucket = hash & (table.length - 1);
+		for (Node node = table[bucket]; node != null; node = node.next) {
+			if (node.nw == nw && node.ne == ne && node.sw == sw && node.se == se) return node;
+		}
+		Node node = new Node(nw.level + 1, nw, ne, sw, se,
+				nw.population + ne.population + sw.population + se.population, hash);
+		node.next = table[bucket];
+		table[bucket] = node;
+		if (++size > table.length - (table.length >>> 2)) grow();
+		if (limited && size > maxNodes) throw CACHE_FULL;
+		return node;
+	}
+
+	private void grow() {
+		Node[] old = table;
+		table = new Node[old.length << 1];
+		for (Node head : old) {
+			while (head != null) {
+				Node next = head.next;
+				int bucket = head.hash & (table.length - 1);
+				head.next = table[bucket];
+				table[bucket] = head;
+				head = next;
+			}
+		}
+	}
+
+	// Center half of a level n >= 2 node, 2^(n-2) generations on
+	private Node result(Node node) {
+		if (node.result != null) return node.result;
+		if (node.population == 0 && !rule.birthOnZero()) node.result = node.nw;
+		else if (node.level == 2) node.result = leafResult(node);
+		else {
+			// Nine overlapping subsquares, each advanced 2^(n-3) generations
+			Node n00 = result(node.nw);
+			Node n01 = result(join(node.nw.ne, node.ne.nw, node.nw.se, node.ne.sw));
+			Node n02 = result(node.ne);
+			Node n10 = result(join(node.nw.sw, node.nw.se, node.sw.nw, node.sw.ne));
+			Node n11 = result(join(node.nw.se, node.ne.sw, node.sw.ne, node.se.nw));
+			Node n12 = result(join(node.ne.sw, node.ne.se, node.se.nw, node.se.ne));
+			Node n20 = result(node.sw);
+			Node n21 = result(join(node.sw.ne, node.se.nw, node.sw.se, node.se.sw));
+			Node n22 = result(node.se);
+
+			// Combine them into four squares and advance another 2^(n-3) generations
+			node.result = join(result(join(n00, n01, n10, n11)), result(join(n01, n02, n11, n12)),
+					result(join(n10, n11, n20, n21)), result(join(n11, n12, n21, n22)));
+		}
+		return node.result;
+	}
+
+	// Level 2 result via the precomputed 4x4 table
+	private Node leafResult(Node node) {
+		int cells = quarter(node.nw) | quarter(node.ne) << 2 | quarter(node.sw) << 8 | quarter(node.se) << 10;
+		int next = center[cells];
+		return join((next & 1) != 0 ? live : dead, (next & 2) != 0 ? live : dead,
+				(next & 4) != 0 ? live : dead, (next & 8) != 0 ? live : dead);
+	}
+
+	// Cells of a level 1 node as bits 0, 1, 4 and 5 of a 4x4 block
+	private int quarter(Node node) {
+		return (int) (node.nw.population | node.ne.population << 1 | node.sw.population << 4 | node.se.population << 5);
+	}
+
+	// Next state of the center 2x2 of a 4x4 block, as bits nw, ne, sw, se
+	private int centerOf(int cells) {
+		int next = 0;
+		for (int cy = 1; cy <= 2; cy++) {
+			for (int cx = 1; cx <= 2; cx++) {
+				int neighbors = 0;
+				for (int dy = -1; dy <= 1; dy++) {
+					for (int dx = -1; dx <= 1; dx++) {
+						if (dx != 0 || dy != 0) neighbors += (cells >>> (4 * (cy + dy) + cx + dx)) & 1;
+					}
+				}
+				int alive = (cells >>> (4 * cy + cx)) & 1;
+				if (rule.next(alive, neighbors) == 1) next |= 1 << (2 * (cy - 1) + cx - 1);
+			}
+		}
+		return next;
+	}
+
+}
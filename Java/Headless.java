@@ -0,0 +1,281 @@
+/**
+ *
+ * Runs Life or PredPrey without a window, as fast as the CPU allows
+ *
+ * Usage: java Headless life|predprey [options]
+ *   --width N, --height N        board size (default 180 x 100)
+ *   --generations N              generations to run (default 1000)
+ *   --seed N                     random seed for the starting board and PredPrey's rules
+ *   --rule RULE                  Life rulestring (default B3/S23, or the rule an .rle --input was saved with,
+ *                                which a different --rule is refused for; see LifeRule)
+ *   --density P                  Life: initial probability a cell is alive (default 0.15)
+ *   --input FILE                 Life: start from a saved .csv, .bin or .rle board instead of a random one
+ *   --topology torus|plane       Life: wrap around the board's edges (default), or run on an unbounded plane
+ *                                starting from the board (snapshots then hold the rectangle around every live cell)
+ *   --prey P, --pred P, --maxN N PredPrey: initial prey / predator probability, prey crowding limit
+ *   --starve P, --move P, --isolated-death P, --prey-death P
+ *                                PredPrey rule probabilities (defaults in PredPreyRules)
+ *   --stats FILE                 per-generation statistics as CSV (default: standard output)
+ *   --stats-every N              write statistics every N generations (default 1)
+ *   --snapshots DIR              write board snapshots into DIR
+ *   --snapshot-every N           snapshot every N generations (default: final generation only)
+ *   --snapshot-format csv|bin|rle  Life snapshot file format (default csv; PredPrey always writes csv)
+ *   --cycles report|stop|skip    Life: watch for the board repeating itself (a still life or oscillator) and,
+ *                                once it does, report the period, stop there, or skip to the last generation
+ *                                (writing no statistics or snapshots for the generations skipped)
+ *   --cycle-window N             longest period looked for (default 4096)
+ *   --expect-period N            Life: exit with status 1 unless a cycle of exactly this period is found
+ *   --temporal-blocking N|auto   Life on a torus: step N generations per pass over the board between the
+ *                                generations written (auto: as many as suit the L2 cache, see TemporalStepper);
+ *                                births and deaths are then those of the last generation of each pass
+ *   --in-place FILE              Life on a torus: step a .bin board file where it lies, mapped rather than loaded
+ *                                so it needn't fit in the heap, leaving the last generation in the file; writes
+ *                                statistics (births and deaths of each pass's last generation) but no snapshots
+ *   --metrics-port N             time every step and serve metrics at localhost:N/metrics (and over JMX)
+ *                                while running
+ *
+ **/
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public final class Headless {
+
+	private static final String USAGE = "Usage: java Headless life|predprey [--width N] [--height N] [--generations N] [--seed N] ...";
+
+	// Every option listed above
+	private static final Set<String> OPTIONS = new HashSet<String>(Arrays.asList("width", "height", "generations",
+			"seed", "rule", "density", "input", "topology", "prey", "pred", "maxN", "starve", "move", "isolated-death",
+			"prey-death", "stats", "stats-every", "snapshots", "snapshot-every", "snapshot-format", "cycles",
+			"cycle-window", "expect-period", "temporal-blocking", "in-place", "metrics-port"));
+
+	private Headless() {}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0 || (!args[0].equals("life") && !args[0].equals("predprey"))) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		Map<String, String> options = parseOptions(args);
+		if (options.containsKey("in-place")) {
+			if (!args[0].equals("life")) throw new IllegalArgumentException("Only Life can be stepped in place");
+			runInPlace(options);
+			return;
+		}
+		int width = Integer.parseInt(options.getOrDefault("width", "180"));
+		int height = Integer.parseInt(options.getOrDefault("height", "100"));
+		long generations = Long.parseLong(options.getOrDefault("generations", "1000"));
+		long seed = Long.parseLong(options.getOrDefault("seed", Long.toString(System.nanoTime())));
+		int statsEvery = Integer.parseInt(options.getOrDefault("stats-every", "1"));
+		long snapshotEvery = Long.parseLong(options.getOrDefault("snapshot-every", "0"));
+		File snapshots = options.containsKey("snapshots") ? new File(options.get("snapshots")) : null;
+		String snapshotFormat = options.getOrDefault("snapshot-format", "csv");
+		if (snapshots != null && !snapshots.isDirectory() && !snapshots.mkdirs())
+			throw new IOException("Cannot create snapshot directory " + snapshots);
+
+		Simulation sim = args[0].equals("life") ? createLife(options, width, height, seed)
+				: createPredPrey(options, width, height, seed);
+		if (!(sim instanceof LifeSimulation)) snapshotFormat = "csv";
+
+		PrintWriter stats = options.containsKey("stats")
+				? new PrintWriter(new BufferedWriter(new FileWriter(options.get("stats"))))
+				: new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		stats.println("generation," + String.join(",", sim.getStatNames()));
+		writeStats(stats, sim);
+
+		String onCycle = options.get("cycles");
+		long expectPeriod = Long.parseLong(options.getOrDefault("expect-period", "0"));
+		LifeSimulation life = null;
+		if (onCycle != null || expectPeriod > 0) {
+			if (!(sim instanceof LifeSimulation)) throw new IllegalArgumentException("Cycle detection needs a Life-like rule");
+			if (onCycle == null) onCycle = "report";
+			if (!onCycle.equals("report") && !onCycle.equals("stop") && !onCycle.equals("skip"))
+				throw new IllegalArgumentException("--cycles takes report, stop or skip, not " + onCycle);
+			life = (LifeSimulation) sim;
+			life.setCycleDetection(Integer.parseInt(options.getOrDefault("cycle-window", "4096")));
+		}
+
+		// Generations between those written can be stepped together, unless cycle detection needs each one
+		LifeSimulation blocked = null;
+		if (options.containsKey("temporal-blocking")) {
+			if (!(sim instanceof LifeSimulation)) throw new IllegalArgumentException("Temporal blocking needs a Life-like rule");
+			String depth = options.get("temporal-blocking");
+			blocked = (LifeSimulation) sim;
+			blocked.setTemporalBlocking(depth.equals("auto") ? 0 : Integer.parseInt(depth));
+		}
+
+		// Metrics read the statistics after every step, so are only kept when asked for
+		SimulationMetrics metrics = null;
+		MetricsServer server = null;
+		if (options.containsKey("metrics-port")) {
+			metrics = new SimulationMetrics(args[0]);
+			metrics.recordStats(sim);
+			server = MetricsServer.publish(metrics, Integer.parseInt(options.get("metrics-port")));
+		}
+
+		boolean reported = false;
+		long start = System.nanoTime();
+		for (long gen = 1; gen <= generations; gen++) {
+			long n = 1;
+			if (blocked != null) {
+				long target = generations;
+				if (statsEvery > 0) target = Math.min(target, ((gen - 1) / statsEvery + 1) * statsEvery);
+				if (snapshots != null && snapshotEvery > 0) target = Math.min(target, ((gen - 1) / snapshotEvery + 1) * snapshotEvery);
+				n = target - gen + 1;
+			}
+			long stepStart = System.nanoTime();
+			if (blocked != null) blocked.step(n);
+			else sim.step();
+			gen += n - 1;
+			if (metrics != null) metrics.recordStep(sim, System.nanoTime() - stepStart);
+			if (statsEvery > 0 && gen % statsEvery == 0) writeStats(stats, sim);
+			if (snapshots != null && snapshotEvery > 0 && gen % snapshotEvery == 0) snapshot(sim, snapshots, snapshotFormat);
+			if (life != null && life.getPeriod() > 0 && !reported) {
+				System.err.printf("Generation %d: cycle of period %d from generation %d%n",
+						gen, life.getPeriod(), life.getCycleStart());
+				reported = true;
+				if (onCycle.equals("skip") && gen < generations) {
+					life.advance(generations);
+					if (statsEvery > 0) writeStats(stats, sim);
+				}
+				if (!onCycle.equals("report")) break;
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		long last = sim.getGeneration();
+		if (snapshots != null && (snapshotEvery == 0 || last % snapshotEvery != 0)) snapshot(sim, snapshots, snapshotFormat);
+		stats.flush();
+		if (options.containsKey("stats")) stats.close();
+		if (server != null) server.stop();
+
+		System.err.printf("%d generations in %.3f s (%.1f generations/sec)%n",
+				last, seconds, seconds > 0 ? last / seconds : 0.0);
+		if (expectPeriod > 0 && life.getPeriod() != expectPeriod) {
+			System.err.printf("Expected a cycle of period %d, found %s%n", expectPeriod,
+					life.getPeriod() > 0 ? "period " + life.getPeriod() : "none");
+			System.exit(1);
+		}
+	}
+
+	/**
+	 *  Step a binary board file in place (see OffHeapGrid), as many generations a pass as
+	 *  --temporal-blocking asks or the cache suits, stopping at every generation statistics are
+	 *  written at. Population is counted as each pass writes its bands back.
+	 */
+	private static void runInPlace(Map<String, String> options) throws IOException {
+		LifeRule rule = LifeRule.parse(options.getOrDefault("rule", "B3/S23"));
+		if (!rule.isLifeLike()) throw new IllegalArgumentException("Stepping in place needs a Life-like rule, not " + rule);
+		long generations = Long.parseLong(options.getOrDefault("generations", "1000"));
+		int statsEvery = Integer.parseInt(options.getOrDefault("stats-every", "1"));
+		String depth = options.getOrDefault("temporal-blocking", "auto");
+		OffHeapGrid board = OffHeapGrid.map(new File(options.get("in-place")));
+		TemporalStepper temporal = TemporalStepper.tuned(board.getWidth(), board.getHeight(),
+				depth.equals("auto") ? 0 : Integer.parseInt(depth));
+		ParallelStepper stepper = new ParallelStepper(32);
+
+		PrintWriter stats = options.containsKey("stats")
+				? new PrintWriter(new BufferedWriter(new FileWriter(options.get("stats"))))
+				: new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		stats.println("generation,population,births,deaths");
+		long population = board.getPopulation(), generation = 0, births = 0, deaths = 0;
+		stats.println("0," + population + ",0,0");
+		long start = System.nanoTime();
+		while (generation < generations) {
+			long target = statsEvery > 0 ? Math.min(generations, (generation / statsEvery + 1) * statsEvery) : generations;
+			while (generation < target) {
+				int n = (int) Math.min(target - generation, temporal.getDepth());
+				long[] tally = new long[2];
+				population = temporal.stepInPlace(board, rule, n, stepper, tally);
+				births = tally[0];
+				deaths = tally[1];
+				generation += n;
+			}
+			if (statsEvery > 0 && generation % statsEvery == 0)
+				stats.println(generation + "," + population + "," + births + "," + deaths);
+		}
+		board.force();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		stats.flush();
+		if (options.containsKey("stats")) stats.close();
+		System.err.printf("%d generations in place in %.3f s (%.1f generations/sec)%n",
+				generation, seconds, seconds > 0 ? generation / seconds : 0.0);
+	}
+
+	private static Simulation createLife(Map<String, String> options, int width, int height, long seed)
+			throws IOException {
+		LifeRule rule = options.containsKey("input") ? BoardIO.ruleFor(new File(options.get("input")), options.get("rule"))
+				: LifeRule.parse(options.getOrDefault("rule", "B3/S23"));
+		double density = Double.parseDouble(options.getOrDefault("density", "0.15"));
+		if (!rule.isLifeLike()) {
+			RuleSimulation sim = new RuleSimulation(width, height, rule);
+			sim.fillRandom(new Random(seed), density);
+			return sim;
+		}
+		String topology = options.getOrDefault("topology", "torus");
+		if (!topology.equals("torus") && !topology.equals("plane"))
+			throw new IllegalArgumentException("--topology takes torus or plane, not " + topology);
+		if (options.containsKey("input")) {
+			LifeGrid board = BoardIO.read(new File(options.get("input")));
+			LifeSimulation sim = new LifeSimulation(board.getWidth(), board.getHeight(), rule);
+			sim.setUnbounded(topology.equals("plane"));
+			sim.getGrid().copyFrom(board);
+			sim.invalidate();
+			return sim;
+		}
+		LifeSimulation sim = new LifeSimulation(width, height, rule);
+		sim.setUnbounded(topology.equals("plane"));
+		sim.fillRandom(new Random(seed), density);
+		return sim;
+	}
+
+	private static Simulation createPredPrey(Map<String, String> options, int width, int height, long seed) {
+		PredPreyRules d = PredPreyRules.DEFAULT;
+		PredPreyRules rules = new PredPreyRules(Integer.parseInt(options.getOrDefault("maxN", "5")),
+				Double.parseDouble(options.getOrDefault("starve", Double.toString(d.getStarve()))),
+				Double.parseDouble(options.getOrDefault("move", Double.toString(d.getMove()))),
+				Double.parseDouble(options.getOrDefault("isolated-death", Double.toString(d.getIsolatedDeath()))),
+				Double.parseDouble(options.getOrDefault("prey-death", Double.toString(d.getPreyDeath()))));
+		PredPreySimulation sim = new PredPreySimulation(width, height, rules, seed, new ParallelStepper(16));
+		sim.fillRandom(Double.parseDouble(options.getOrDefault("prey", "0.15")),
+				Double.parseDouble(options.getOrDefault("pred", "0.005")));
+		return sim;
+	}
+
+	// "--name value" pairs after the model name; an option not listed above is taken for a typo, and
+	// exits rather than running with the defaults
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int k = 1; k < args.length; k += 2) {
+			if (!args[k].startsWith("--") || k + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[k]);
+			if (!OPTIONS.contains(args[k].substring(2))) {
+				System.err.println("Unknown option " + args[k]);
+				System.err.println(USAGE);
+				System.exit(2);
+			}
+			options.put(args[k].substring(2), args[k + 1]);
+		}
+		return options;
+	}
+
+	private static void writeStats(PrintWriter stats, Simulation sim) {
+		StringBuilder line = new StringBuilder().append(sim.getGeneration());
+		for (long value : sim.getStats()) line.append(',').append(value);
+		stats.println(line);
+	}
+
+	private static void snapshot(Simulation sim, File dir, String format) throws IOException {
+		sim.saveSnapshot(new File(dir, "gen-" + sim.getGeneration() + "." + format));
+	}
+
+}
@@ -0,0 +1,30 @@
+/**
+ *
+ * Picks the StepKernel for this JVM: the Vector API kernel when the jdk.incubator.vector module
+ * is present (run with --add-modules jdk.incubator.vector), the scalar kernel otherwise
+ * Setting -Dca.kernel=scalar forces the scalar kernel
+ *
+ **/
+
+public final class Kernels {
+
+	private static final StepKernel KERNEL = load();
+
+	private Kernels() {}
+
+	public static StepKernel get() {
+		return KERNEL;
+	}
+
+	private static StepKernel load() {
+		if ("scalar".equals(System.getProperty("ca.kernel"))) return new ScalarKernel();
+		try {
+			return (StepKernel) Class.forName("VectorKernel").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e) {
+			// Module not resolved (or kernel not compiled): stay on the scalar loops
+			return new ScalarKernel();
+		}
+	}
+
+}
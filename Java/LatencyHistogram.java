@@ -0,0 +1,69 @@
+/**
+ *
+ * Histogram of durations in power-of-two buckets from 1 microsecond to about 1 second
+ * One thread records (a step or a frame at a time) while any other reads, without locks; a
+ * reader may see a count and sum from slightly different moments, which is fine for monitoring
+ *
+ **/
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+public final class LatencyHistogram {
+
+	// Bucket k counts durations up to 2^k microseconds; the last counts everything longer
+	private static final int BUCKETS = 22;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private volatile long count, sumNanos;
+
+	public void record(long nanos) {
+		long micros = (Math.max(0, nanos) + 999) / 1000;
+		int bucket = micros <= 1 ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+		counts.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+		sumNanos += nanos;
+		count++;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public double getMeanMillis() {
+		long n = count;
+		return n == 0 ? 0 : sumNanos / 1e6 / n;
+	}
+
+	// Upper bound of the bucket holding the q-th quantile (0 < q <= 1), in milliseconds
+	public double getQuantileMillis(double q) {
+		long total = 0;
+		for (int k = 0; k < BUCKETS; k++) total += counts.get(k);
+		if (total == 0) return 0;
+		long rank = (long) Math.ceil(q * total), seen = 0;
+		for (int k = 0; k < BUCKETS - 1; k++) {
+			seen += counts.get(k);
+			if (seen >= rank) return bound(k) * 1000;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
+	// Append as a Prometheus histogram in seconds; labels is e.g. sim="life"
+	public void writePrometheus(StringBuilder out, String name, String labels) {
+		long cumulative = 0;
+		for (int k = 0; k < BUCKETS; k++) {
+			cumulative += counts.get(k);
+			String le = k == BUCKETS - 1 ? "+Inf" : String.format(Locale.ROOT, "%.6f", bound(k));
+			out.append(name).append("_bucket{").append(labels).append(",le=\"").append(le).append("\"} ")
+					.append(cumulative).append('\n');
+		}
+		out.append(name).append("_sum{").append(labels).append("} ")
+				.append(String.format(Locale.ROOT, "%.9f", sumNanos / 1e9)).append('\n');
+		out.append(name).append("_count{").append(labels).append("} ").append(cumulative).append('\n');
+	}
+
+	// Upper bound of bucket k, in seconds
+	private static double bound(int k) {
+		return (1L << k) / 1e6;
+	}
+
+}
@@ -0,0 +1,285 @@
+/**
+ *
+ * Bit-packed toroidal grid for the Game of Life
+ * Each cell is one bit: bit b of word w in row y holds cell (64*w + b, y)
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class LifeGrid {
+
+	private static final StepKernel KERNEL = Kernels.get();
+
+	private final int width, height, wordsPerRow;
+
+	// Position of the last cell in the final word of each row, and a mask of the valid bits in that word
+	private final int lastBit;
+	private final long lastMask;
+
+	// Row-major cell words; padding bits past the end of each row are always zero
+	private final long[] words;
+
+	public LifeGrid(int width, int height) {
+		if (width < 1 || height < 1) throw new IllegalArgumentException("Grid must be at least 1x1");
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.lastBit = (width - 1) & 63;
+		this.lastMask = -1L >>> (63 - lastBit);
+		this.words = new long[wordsPerRow * height];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	// Backing words, for kernels and serializers that work a word at a time
+	public long[] getWords() {
+		return words;
+	}
+
+	public boolean get(int x, int y) {
+		return (words[y * wordsPerRow + (x >>> 6)] & (1L << x)) != 0;
+	}
+
+	public void set(int x, int y, boolean alive) {
+		int w = y * wordsPerRow + (x >>> 6);
+		if (alive) words[w] |= 1L << x;
+		else words[w] &= ~(1L << x);
+	}
+
+	public void toggle(int x, int y) {
+		words[y * wordsPerRow + (x >>> 6)] ^= 1L << x;
+	}
+
+	public void clear() {
+		Arrays.fill(words, 0L);
+	}
+
+	public void copyFrom(LifeGrid other) {
+		if (other.width != width || other.height != height)
+			throw new IllegalArgumentException("Grid dimensions differ");
+		System.arraycopy(other.words, 0, words, 0, words.length);
+	}
+
+	/**
+	 *  ORs the live cells of pattern into this grid with its top left corner at (x, y), a word of
+	 *  the pattern at a time, wrapping round the torus. With clear set, every cell under the
+	 *  pattern's rectangle is killed instead, live in the pattern or not.
+	 */
+	public void stamp(LifeGrid pattern, int x, int y, boolean clear) {
+		x = Math.floorMod(x, width);
+		y = Math.floorMod(y, height);
+		for (int r = 0; r < pattern.height; r++) {
+			int row = (y + r) % height * wordsPerRow;
+			for (int w = 0, at = x; w < pattern.wordsPerRow; w++, at = (at + 64) % width) {
+				long bits = pattern.words[r * pattern.wordsPerRow + w];
+				if (clear) bits = w == pattern.wordsPerRow - 1 ? pattern.lastMask : -1L;
+				blit(row, at, bits, clear);
+			}
+		}
+	}
+
+	// OR (or clear) 64 cells into the row starting at word index row, bit k landing on cell x + k,
+	// split across as many words as the shift and the right edge of the torus need
+	private void blit(int row, int x, long bits, boolean clear) {
+		while (bits != 0) {
+			int shift = x & 63, room = Math.min(64 - shift, width - x);
+			long part = room == 64 ? bits : bits & ((1L << room) - 1);
+			if (clear) words[row + (x >>> 6)] &= ~(part << shift);
+			else words[row + (x >>> 6)] |= part << shift;
+			if (room == 64) return;
+			bits >>>= room;
+			x += room;
+			if (x == width) x = 0;
+		}
+	}
+
+	/**
+	 *  64-bit hash of the board: the XOR of a hash of every word and its position, Zobrist-style,
+	 *  so a step can update it from just the words it changed (hashChange) instead of rehashing.
+	 */
+	public long hash() {
+		long hash = 0;
+		for (int i = 0; i < words.length; i++) hash ^= wordHash(i, words[i]);
+		return hash;
+	}
+
+	// What to XOR into previous.hash() to get hash(), counting words [fromWord, toWord) of rows
+	// [fromRow, toRow) as the only ones that may differ
+	public long hashChange(LifeGrid previous, int fromRow, int toRow, int fromWord, int toWord) {
+		long change = 0;
+		long[] old = previous.words;
+		for (int y = fromRow; y < toRow; y++) {
+			for (int i = y * wordsPerRow + fromWord, end = y * wordsPerRow + toWord; i < end; i++) {
+				if (words[i] == old[i]) continue;
+				long position = CellRandom.mix(i);
+				change ^= CellRandom.mix(words[i] + position) ^ CellRandom.mix(old[i] + position);
+			}
+		}
+		return change;
+	}
+
+	// The word hashed with its position, so equal words in different places don't cancel out
+	private static long wordHash(int index, long word) {
+		return CellRandom.mix(word + CellRandom.mix(index));
+	}
+
+	// Advance one generation under the given (Life-like) rule, writing the result into dst
+	public void step(LifeGrid dst, LifeRule rule) {
+		stepRows(dst, rule, 0, height);
+	}
+
+	// Advance rows [from, to) one generation, writing the result into the same rows of dst
+	public void stepRows(LifeGrid dst, LifeRule rule, int from, int to) {
+		stepRows(dst, rule, from, to, new long[2]);
+	}
+
+	// As stepRows, adding the cells born to tally[0] and the cells that died to tally[1]
+	public void stepRows(LifeGrid dst, LifeRule rule, int from, int to, long[] tally) {
+		if (dst == this || dst.width != width || dst.height != height)
+			throw new IllegalArgumentException("Destination must be a distinct grid of the same size");
+		if (!rule.isLifeLike()) throw new IllegalArgumentException("LifeGrid only runs two-state Moore rules, not " + rule);
+		boolean conway = rule.isConway();
+		int birth = rule.getBirthMask(), survive = rule.getSurviveMask();
+		for (int y = from; y < to; y++) {
+			int above = (y == 0 ? height : y) - 1;
+			int below = (y + 1 == height) ? 0 : y + 1;
+			stepRow(dst.words, above * wordsPerRow, y * wordsPerRow, below * wordsPerRow, 0, wordsPerRow,
+					conway, birth, survive, tally);
+		}
+	}
+
+	// Advance the single word column w over rows [from, to), returning whether any cell changed;
+	// births and deaths are added to tally as in stepRows
+	public boolean stepTile(LifeGrid dst, LifeRule rule, int w, int from, int to, long[] tally) {
+		if (!rule.isLifeLike()) throw new IllegalArgumentException("LifeGrid only runs two-state Moore rules, not " + rule);
+		boolean conway = rule.isConway();
+		int birth = rule.getBirthMask(), survive = rule.getSurviveMask();
+		long changed = 0;
+		for (int y = from; y < to; y++) {
+			int above = (y == 0 ? height : y) - 1;
+			int below = (y + 1 == height) ? 0 : y + 1;
+			changed |= stepRow(dst.words, above * wordsPerRow, y * wordsPerRow, below * wordsPerRow, w, w + 1,
+					conway, birth, survive, tally);
+		}
+		return changed != 0;
+	}
+
+	/**
+	 *  Step words [from, to) of one row, 64 cells per word. Interior words go through the
+	 *  selected StepKernel; the first and last words, whose west and east neighbors wrap around
+	 *  the row ends, are handled here. Returns the OR of every changed bit.
+	 */
+	private long stepRow(long[] out, int above, int row, int below, int from, int to,
+			boolean conway, int birth, int survive, long[] tally) {
+		long changed = 0;
+		int last = wordsPerRow - 1;
+		int lo = Math.max(from, 1), hi = Math.min(to, last);
+		if (lo < hi) changed |= KERNEL.lifeWords(words, out, above, row, below, lo, hi, conway, birth, survive, tally);
+		if (from == 0) changed |= stepEdge(out, above, row, below, 0, conway, birth, survive, tally);
+		if (to == wordsPerRow && last > 0) changed |= stepEdge(out, above, row, below, last, conway, birth, survive, tally);
+		return changed;
+	}
+
+	// Step the first or last word of a row, wrapping west and east neighbors around the row ends
+	private long stepEdge(long[] out, int above, int row, int below, int w,
+			boolean conway, int birth, int survive, long[] tally) {
+		int last = wordsPerRow - 1;
+		long a = words[above + w], c = words[row + w], b = words[below + w];
+		long aw, cw, bw, ae, ce, be;
+		if (w > 0) {
+			aw = (a << 1) | (words[above + w - 1] >>> 63);
+			cw = (c << 1) | (words[row + w - 1] >>> 63);
+			bw = (b << 1) | (words[below + w - 1] >>> 63);
+		}
+		else {
+			aw = (a << 1) | ((words[above + last] >>> lastBit) & 1L);
+			cw = (c << 1) | ((words[row + last] >>> lastBit) & 1L);
+			bw = (b << 1) | ((words[below + last] >>> lastBit) & 1L);
+		}
+		if (w < last) {
+			ae = (a >>> 1) | (words[above + w + 1] << 63);
+			ce = (c >>> 1) | (words[row + w + 1] << 63);
+			be = (b >>> 1) | (words[below + w + 1] << 63);
+		}
+		else {
+			ae = (a >>> 1) | ((words[above] & 1L) << lastBit);
+			ce = (c >>> 1) | ((words[row] & 1L) << lastBit);
+			be = (b >>> 1) | ((words[below] & 1L) << lastBit);
+		}
+		long next = conway ? lifeWord(aw, a, ae, cw, c, ce, bw, b, be)
+				: ruleWord(aw, a, ae, cw, c, ce, bw, b, be, birth, survive);
+		if (w == last) next &= lastMask;
+		out[row + w] = next;
+		long diff = next ^ c;
+		tally[0] += Long.bitCount(diff & next);
+		tally[1] += Long.bitCount(diff & c);
+		return diff;
+	}
+
+	/**
+	 *  Classic rule set (B3/S23) applied to 64 cells at once. Each argument holds one neighbor
+	 *  (or the cell itself, c) for every bit position; the eight neighbors are summed with an
+	 *  adder tree into ones / twos / fours bit planes.
+	 */
+	public static long lifeWord(long aw, long a, long ae, long cw, long c, long ce, long bw, long b, long be) {
+
+		// Count the rows above and below with full adders, and the two side neighbors with a half adder
+		long ax = aw ^ a, aOnes = ax ^ ae, aTwos = (aw & a) | (ax & ae);
+		long bx = bw ^ b, bOnes = bx ^ be, bTwos = (bw & b) | (bx & be);
+		long cOnes = cw ^ ce, cTwos = cw & ce;
+
+		// Add the ones column, carrying into the twos column
+		long ox = aOnes ^ bOnes;
+		long ones = ox ^ cOnes, carry = (aOnes & bOnes) | (ox & cOnes);
+
+		// Add the four twos; any two of them set means four or more neighbors
+		long tx = aTwos ^ bTwos, ty = cTwos ^ carry;
+		long twos = tx ^ ty;
+		long fours = (aTwos & bTwos) | (cTwos & carry) | (tx & ty);
+
+		// Alive with exactly three neighbors, or with two if already alive
+		return twos & ~fours & (ones | c);
+	}
+
+	/**
+	 *  Any two-state Moore rule applied to 64 cells at once, given its birth and survival counts
+	 *  as bit masks (see LifeRule). The same adder tree yields the full four-bit neighbor count,
+	 *  and every count the rule uses is matched against those bit planes.
+	 */
+	public static long ruleWord(long aw, long a, long ae, long cw, long c, long ce, long bw, long b, long be,
+			int birth, int survive) {
+		long ax = aw ^ a, aOnes = ax ^ ae, aTwos = (aw & a) | (ax & ae);
+		long bx = bw ^ b, bOnes = bx ^ be, bTwos = (bw & b) | (bx & be);
+		long cOnes = cw ^ ce, cTwos = cw & ce;
+		long ox = aOnes ^ bOnes;
+		long ones = ox ^ cOnes, carry = (aOnes & bOnes) | (ox & cOnes);
+		long tx = aTwos ^ bTwos, ty = cTwos ^ carry;
+		long twos = tx ^ ty;
+
+		// Carries into the fours column; only the first two can both be set, for a count of eight
+		long p = aTwos & bTwos, q = cTwos & carry, m = tx & ty;
+		long fours = p ^ q ^ m, eights = p & q;
+
+		long born = 0, kept = 0;
+		for (int n = 0; n <= 8; n++) {
+			if (((birth | survive) & (1 << n)) == 0) continue;
+			long match = ((n & 1) != 0 ? ones : ~ones) & ((n & 2) != 0 ? twos : ~twos)
+					& ((n & 4) != 0 ? fours : ~fours) & ((n & 8) != 0 ? eights : ~eights);
+			if ((birth & (1 << n)) != 0) born |= match;
+			if ((survive & (1 << n)) != 0) kept |= match;
+		}
+		return (born & ~c) | (kept & c);
+	}
+
+}
@@ -0,0 +1,370 @@
+/**
+ *
+ * Life on an unbounded plane, stored as the 64 x 64 chunks around live cells
+ * Each chunk is 64 words, one per row, with bit x of a word being cell x of the row as in
+ * LifeGrid. Chunks are found by coordinate in a LongIntMap and held in a pool of slots: one is
+ * made when live cells reach its edge and freed once it is empty with nothing live along the
+ * edges next to it, so memory follows the live area rather than its bounding box
+ * A chunk that didn't change in the last step, with neighbours that didn't either, can't change
+ * in the next, so it is copied rather than stepped
+ *
+ **/
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class LifePlane {
+
+	public static final int CHUNK = 64;
+
+	// Rows -1 to 64 of a chunk's west, own and east columns, as stepChunk reads them
+	private static final int PAD = CHUNK + 2;
+
+	// The eight neighbouring chunks
+	private static final int[] DX = {-1, 0, 1, -1, 1, -1, 0, 1}, DY = {-1, -1, -1, 0, 0, 1, 1, 1};
+
+	private final LongIntMap index = new LongIntMap();
+
+	// Per slot: its chunk's words (and the next generation's, while stepping), its key, whether it
+	// changed in the last step or edit, whether the next step must compute it, and whether a
+	// neighbour was freed straight after changing (so the next step must compute it too)
+	private long[] cells = new long[0], next = new long[0];
+	private long[] keys = new long[0];
+	private boolean[] changed = new boolean[0], dirty = new boolean[0], pending = new boolean[0];
+
+	// Slots in use, in no particular order, the position of each in that list, and free slots
+	private int[] used = new int[0], usedAt = new int[0], free = new int[0];
+	private int usedCount, freeCount, capacity;
+
+	private long population, births, deaths, hashChange;
+	private final AtomicLong bandBirths = new AtomicLong(), bandDeaths = new AtomicLong(), bandHash = new AtomicLong();
+
+	public static long key(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	public boolean get(int x, int y) {
+		int slot = index.get(key(x >> 6, y >> 6));
+		return slot >= 0 && (cells[slot * CHUNK + (y & 63)] & (1L << x)) != 0;
+	}
+
+	public void set(int x, int y, boolean alive) {
+		write(x >> 6, y >> 6, y & 63, alive ? 1L << x : 0, 1L << x);
+	}
+
+	public void clear() {
+		index.clear();
+		usedCount = 0;
+		freeCount = 0;
+		for (int slot = capacity - 1; slot >= 0; slot--) free[freeCount++] = slot;
+		population = 0;
+	}
+
+	public long getPopulation() {
+		return population;
+	}
+
+	// Chunks held, live or waiting for births along a live neighbour's edge
+	public int getChunkCount() {
+		return usedCount;
+	}
+
+	// Cells born and cells that died in the last step
+	public long getBirths() {
+		return births;
+	}
+
+	public long getDeaths() {
+		return deaths;
+	}
+
+	// What the last step XORed into hash(), if it was asked to hash
+	public long getHashChange() {
+		return hashChange;
+	}
+
+	// 64-bit hash of the live cells, a Zobrist-style XOR over rows of chunks as in LifeGrid.hash;
+	// empty rows hash to 0, so making or freeing empty chunks never changes it
+	public long hash() {
+		long hash = 0;
+		for (int k = 0; k < usedCount; k++) {
+			int slot = used[k];
+			for (int row = 0; row < CHUNK; row++) hash ^= rowHash(keys[slot], row, cells[slot * CHUNK + row]);
+		}
+		return hash;
+	}
+
+	// Smallest rectangle holding every live cell, as {minX, minY, maxX, maxY}, or null if there are none
+	public int[] getBounds() {
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		for (int k = 0; k < usedCount; k++) {
+			int slot = used[k], cx = (int) (keys[slot] >> 32), cy = (int) keys[slot];
+			long columns = 0;
+			for (int row = 0; row < CHUNK; row++) {
+				long word = cells[slot * CHUNK + row];
+				if (word == 0) continue;
+				columns |= word;
+				minY = Math.min(minY, cy * CHUNK + row);
+				maxY = Math.max(maxY, cy * CHUNK + row);
+			}
+			if (columns == 0) continue;
+			minX = Math.min(minX, cx * CHUNK + Long.numberOfTrailingZeros(columns));
+			maxX = Math.max(maxX, cx * CHUNK + 63 - Long.numberOfLeadingZeros(columns));
+		}
+		return minX > maxX ? null : new int[] {minX, minY, maxX, maxY};
+	}
+
+	// Copy the cells in the grid-sized window with top left corner (x0, y0) into grid
+	public void copyTo(LifeGrid grid, int x0, int y0) {
+		long[] words = grid.getWords();
+		int wordsPerRow = grid.getWordsPerRow(), shift = x0 & 63;
+		long lastMask = (grid.getWidth() & 63) == 0 ? -1L : (1L << grid.getWidth()) - 1;
+		for (int y = 0; y < grid.getHeight(); y++) {
+			int cy = (y0 + y) >> 6, row = (y0 + y) & 63;
+			for (int w = 0; w < wordsPerRow; w++) {
+				int cx = (x0 >> 6) + w;
+				long word = chunkWord(cx, cy, row) >>> shift;
+				if (shift != 0) word |= chunkWord(cx + 1, cy, row) << (64 - shift);
+				words[y * wordsPerRow + w] = w == wordsPerRow - 1 ? word & lastMask : word;
+			}
+		}
+	}
+
+	// Overwrite the grid-sized window with top left corner (x0, y0) with the cells of grid
+	public void paste(LifeGrid grid, int x0, int y0) {
+		long[] words = grid.getWords();
+		int wordsPerRow = grid.getWordsPerRow(), shift = x0 & 63;
+		long lastMask = (grid.getWidth() & 63) == 0 ? -1L : (1L << grid.getWidth()) - 1;
+		for (int y = 0; y < grid.getHeight(); y++) {
+			int cy = (y0 + y) >> 6, row = (y0 + y) & 63;
+			for (int w = 0; w < wordsPerRow; w++) {
+				int cx = (x0 >> 6) + w;
+				long word = words[y * wordsPerRow + w], mask = w == wordsPerRow - 1 ? lastMask : -1L;
+				write(cx, cy, row, word << shift, mask << shift);
+				if (shift != 0) write(cx + 1, cy, row, word >>> (64 - shift), mask >>> (64 - shift));
+			}
+		}
+	}
+
+	/**
+	 *  Advance one generation under the given (Life-like) rule. Chunks that may change are
+	 *  found first and chunks are made for births over the edges of live ones; then every chunk
+	 *  is stepped (or copied) in parallel, and chunks left empty away from any live edge freed.
+	 *  With hashing, getHashChange() afterwards gives the change in hash().
+	 */
+	public void step(LifeRule rule, ParallelStepper stepper, boolean hashing) {
+		if (!rule.isLifeLike()) throw new IllegalArgumentException("LifePlane only runs two-state Moore rules, not " + rule);
+		boolean conway = rule.isConway();
+		int birth = rule.getBirthMask(), survive = rule.getSurviveMask();
+
+		for (int k = 0; k < usedCount; k++) dirty[used[k]] = changed[used[k]] || pending[used[k]];
+		for (int k = 0; k < usedCount; k++) {
+			int slot = used[k];
+			if (!changed[slot]) continue;
+			for (int d = 0; d < 8; d++) {
+				int neighbour = neighbour(slot, d);
+				if (neighbour >= 0) dirty[neighbour] = true;
+			}
+		}
+		for (int k = 0, n = usedCount; k < n; k++) {
+			int slot = used[k];
+			if (!dirty[slot]) continue;
+			for (int d = 0; d < 8; d++) {
+				if (touches(slot, DX[d], DY[d]) && neighbour(slot, d) < 0) {
+					int cx = (int) (keys[slot] >> 32), cy = (int) keys[slot];
+					int made = allocate(key(cx + DX[d], cy + DY[d]));
+					dirty[made] = true;
+				}
+			}
+		}
+
+		bandBirths.set(0);
+		bandDeaths.set(0);
+		bandHash.set(0);
+		stepper.step(usedCount, (from, to) -> {
+			long[] pad = new long[3 * PAD], tally = new long[2];
+			long change = 0;
+			for (int k = from; k < to; k++) {
+				int slot = used[k];
+				if (dirty[slot]) {
+					changed[slot] = stepChunk(slot, conway, birth, survive, pad, tally);
+					if (hashing && changed[slot]) change ^= hashChange(slot);
+				}
+				else {
+					System.arraycopy(cells, slot * CHUNK, next, slot * CHUNK, CHUNK);
+					changed[slot] = false;
+				}
+			}
+			bandBirths.addAndGet(tally[0]);
+			bandDeaths.addAndGet(tally[1]);
+			if (change != 0) bandHash.accumulateAndGet(change, (x, y) -> x ^ y);
+		});
+		long[] swap = cells;
+		cells = next;
+		next = swap;
+		births = bandBirths.get();
+		deaths = bandDeaths.get();
+		hashChange = bandHash.get();
+		population += births - deaths;
+
+		// Only chunks just computed can have emptied; a freed chunk that changed leaves its
+		// neighbours to be computed next time, as its change can no longer be seen
+		for (int k = 0; k < usedCount; k++) pending[used[k]] = false;
+		for (int k = 0; k < usedCount; ) {
+			int slot = used[k];
+			if (!dirty[slot] || !isEmpty(slot) || edgeLive(slot)) {
+				k++;
+				continue;
+			}
+			if (changed[slot]) {
+				for (int d = 0; d < 8; d++) {
+					int neighbour = neighbour(slot, d);
+					if (neighbour >= 0) pending[neighbour] = true;
+				}
+			}
+			release(slot);
+		}
+	}
+
+	// Step one chunk into next, returning whether any of its cells changed
+	private boolean stepChunk(int slot, boolean conway, int birth, int survive, long[] pad, long[] tally) {
+		int nw = neighbour(slot, 0), n = neighbour(slot, 1), ne = neighbour(slot, 2), w = neighbour(slot, 3);
+		int e = neighbour(slot, 4), sw = neighbour(slot, 5), s = neighbour(slot, 6), se = neighbour(slot, 7);
+		column(pad, 0, w, nw, sw);
+		column(pad, PAD, slot, n, s);
+		column(pad, 2 * PAD, e, ne, se);
+
+		int base = slot * CHUNK;
+		long diffs = 0, born = 0, died = 0;
+		for (int row = 0; row < CHUNK; row++) {
+			int r = row + 1;
+			long a = pad[PAD + r - 1], c = pad[PAD + r], b = pad[PAD + r + 1];
+			long aw = (a << 1) | (pad[r - 1] >>> 63), cw = (c << 1) | (pad[r] >>> 63), bw = (b << 1) | (pad[r + 1] >>> 63);
+			long ae = (a >>> 1) | (pad[2 * PAD + r - 1] << 63), ce = (c >>> 1) | (pad[2 * PAD + r] << 63);
+			long be = (b >>> 1) | (pad[2 * PAD + r + 1] << 63);
+			long word = conway ? LifeGrid.lifeWord(aw, a, ae, cw, c, ce, bw, b, be)
+					: LifeGrid.ruleWord(aw, a, ae, cw, c, ce, bw, b, be, birth, survive);
+			next[base + row] = word;
+			long diff = word ^ c;
+			diffs |= diff;
+			born += Long.bitCount(diff & word);
+			died += Long.bitCount(diff & c);
+		}
+		tally[0] += born;
+		tally[1] += died;
+		return diffs != 0;
+	}
+
+	// Rows -1 to 64 of a column of chunks into pad from offset: the last row of the chunk above,
+	// the chunk's own rows, then the first row of the chunk below (0 for any missing chunk)
+	private void column(long[] pad, int offset, int slot, int above, int below) {
+		pad[offset] = above >= 0 ? cells[above * CHUNK + CHUNK - 1] : 0;
+		if (slot >= 0) System.arraycopy(cells, slot * CHUNK, pad, offset + 1, CHUNK);
+		else Arrays.fill(pad, offset + 1, offset + 1 + CHUNK, 0L);
+		pad[offset + CHUNK + 1] = below >= 0 ? cells[below * CHUNK] : 0;
+	}
+
+	// Change in hash() between a chunk's cells and its next generation
+	private long hashChange(int slot) {
+		long change = 0;
+		for (int row = 0, i = slot * CHUNK; row < CHUNK; row++, i++) {
+			if (cells[i] != next[i]) change ^= rowHash(keys[slot], row, cells[i]) ^ rowHash(keys[slot], row, next[i]);
+		}
+		return change;
+	}
+
+	private static long rowHash(long key, int row, long word) {
+		return word == 0 ? 0 : CellRandom.mix(word + CellRandom.mix(key * CHUNK + row));
+	}
+
+	// Slot of the neighbouring chunk in direction d, or -1 if it doesn't exist
+	private int neighbour(int slot, int d) {
+		int cx = (int) (keys[slot] >> 32), cy = (int) keys[slot];
+		return index.get(key(cx + DX[d], cy + DY[d]));
+	}
+
+	// Whether a chunk has live cells on its side (or corner) facing direction (dx, dy)
+	private boolean touches(int slot, int dx, int dy) {
+		long mask = dx < 0 ? 1L : dx > 0 ? 1L << 63 : -1L;
+		int from = dy > 0 ? CHUNK - 1 : 0, to = dy < 0 ? 1 : CHUNK;
+		long bits = 0;
+		for (int row = from; row < to; row++) bits |= cells[slot * CHUNK + row];
+		return (bits & mask) != 0;
+	}
+
+	// Whether any neighbour has live cells along the edge next to this chunk
+	private boolean edgeLive(int slot) {
+		for (int d = 0; d < 8; d++) {
+			int neighbour = neighbour(slot, d);
+			if (neighbour >= 0 && touches(neighbour, -DX[d], -DY[d])) return true;
+		}
+		return false;
+	}
+
+	private boolean isEmpty(int slot) {
+		for (int i = slot * CHUNK, end = i + CHUNK; i < end; i++) {
+			if (cells[i] != 0) return false;
+		}
+		return true;
+	}
+
+	// Word row of chunk (cx, cy), 0 if the chunk doesn't exist
+	private long chunkWord(int cx, int cy, int row) {
+		int slot = index.get(key(cx, cy));
+		return slot < 0 ? 0 : cells[slot * CHUNK + row];
+	}
+
+	// Set the cells under mask in word row of chunk (cx, cy) to bits, making the chunk if needed
+	private void write(int cx, int cy, int row, long bits, long mask) {
+		long key = key(cx, cy);
+		int slot = index.get(key);
+		if (slot < 0) {
+			if ((bits & mask) == 0) return;
+			slot = allocate(key);
+		}
+		int i = slot * CHUNK + row;
+		long word = (cells[i] & ~mask) | (bits & mask);
+		if (word == cells[i]) return;
+		population += Long.bitCount(word) - Long.bitCount(cells[i]);
+		cells[i] = word;
+		changed[slot] = true;
+	}
+
+	// An empty chunk at key, in a free slot
+	private int allocate(long key) {
+		if (freeCount == 0) grow();
+		int slot = free[--freeCount];
+		Arrays.fill(cells, slot * CHUNK, (slot + 1) * CHUNK, 0L);
+		keys[slot] = key;
+		changed[slot] = dirty[slot] = pending[slot] = false;
+		used[usedCount] = slot;
+		usedAt[slot] = usedCount++;
+		index.put(key, slot);
+		return slot;
+	}
+
+	private void release(int slot) {
+		index.remove(keys[slot]);
+		int at = usedAt[slot], last = used[--usedCount];
+		used[at] = last;
+		usedAt[last] = at;
+		free[freeCount++] = slot;
+	}
+
+	// Double the pool of slots
+	private void grow() {
+		int size = Math.max(16, capacity * 2);
+		cells = Arrays.copyOf(cells, size * CHUNK);
+		next = Arrays.copyOf(next, size * CHUNK);
+		keys = Arrays.copyOf(keys, size);
+		changed = Arrays.copyOf(changed, size);
+		dirty = Arrays.copyOf(dirty, size);
+		pending = Arrays.copyOf(pending, size);
+		used = Arrays.copyOf(used, size);
+		usedAt = Arrays.copyOf(usedAt, size);
+		free = Arrays.copyOf(free, size);
+		for (int slot = size - 1; slot >= capacity; slot--) free[freeCount++] = slot;
+		capacity = size;
+	}
+
+}
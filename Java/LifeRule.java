@@ -0,0 +1,229 @@
+/**
+ *
+ * Outer totalistic rules for Life-like cellular automata, compiled to lookup tables
+ * Accepted rulestrings:
+ *   "B3/S23", "B36/S23", "S23/B3", "23/3"    Life-like rules (survival/birth in the legacy form)
+ *   "B2/S34V"                                 von Neumann neighbourhood (suffix V)
+ *   "B2/S/C3", "B2/S/G3", "/2/3"              Generations rules with C states
+ *   "R2,C0,M0,S5..8,B6..7,NM"                 Larger than Life: range R, C states, M=1 counts the
+ *                                             cell itself, N = M (Moore box) or N (von Neumann)
+ *
+ * States are 0 (dead), 1 (alive) and, for Generations rules, 2..C-1 (dying). Only live cells
+ * are counted as neighbors.
+ *
+ **/
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public final class LifeRule {
+
+	public static final LifeRule CONWAY = parse("B3/S23");
+
+	private final String name;
+	private final int states, range;
+	private final boolean vonNeumann, countSelf;
+
+	// birth[n] / survive[n]: whether a dead / live cell with n live neighbors is alive next
+	private final boolean[] birth, survive;
+
+	// Neighbor offsets as {dx, dy}, and the next state for every (state, count): table[state * (maxCount + 1) + count]
+	private final int[][] offsets;
+	private final int maxCount;
+	private final byte[] table;
+
+	private LifeRule(String name, int states, int range, boolean vonNeumann, boolean countSelf,
+			boolean[] birth, boolean[] survive) {
+		this.name = name;
+		this.states = states;
+		this.range = range;
+		this.vonNeumann = vonNeumann;
+		this.countSelf = countSelf;
+		this.birth = birth;
+		this.survive = survive;
+
+		List<int[]> list = new ArrayList<int[]>();
+		for (int dy = -range; dy <= range; dy++) {
+			for (int dx = -range; dx <= range; dx++) {
+				if (vonNeumann && Math.abs(dx) + Math.abs(dy) > range) continue;
+				if (dx == 0 && dy == 0 && !countSelf) continue;
+				list.add(new int[] {dx, dy});
+			}
+		}
+		offsets = list.toArray(new int[list.size()][]);
+		maxCount = offsets.length;
+		if (birth.length != maxCount + 1 || survive.length != maxCount + 1)
+			throw new IllegalArgumentException("Neighbor counts out of range in rule " + name);
+
+		// Live cells that don't survive start dying (or die outright with two states); dying cells age
+		table = new byte[states * (maxCount + 1)];
+		for (int state = 0; state < states; state++) {
+			for (int count = 0; count <= maxCount; count++) {
+				int next;
+				if (state == 0) next = birth[count] ? 1 : 0;
+				else if (state == 1) next = survive[count] ? 1 : (states > 2 ? 2 : 0);
+				else next = (state + 1) % states;
+				table[state * (maxCount + 1) + count] = (byte) next;
+			}
+		}
+	}
+
+	public static LifeRule parse(String rule) {
+		String spec = rule.trim().toUpperCase();
+		if (spec.startsWith("R")) return parseLargerThanLife(rule, spec);
+
+		boolean vonNeumann = spec.endsWith("V");
+		if (vonNeumann) spec = spec.substring(0, spec.length() - 1);
+		int maxCount = vonNeumann ? 4 : 8;
+
+		String[] parts = spec.split("/", -1);
+		if (parts.length < 2 || parts.length > 3) throw new IllegalArgumentException("Unrecognized rule " + rule);
+		String b = null, s = null;
+		int states = 2;
+		for (int p = 0; p < parts.length; p++) {
+			String part = parts[p];
+			if (part.startsWith("B")) b = part.substring(1);
+			else if (part.startsWith("S")) s = part.substring(1);
+			else if (part.startsWith("C") || part.startsWith("G")) states = parseInt(part.substring(1), rule);
+			else if (p == 0) s = part;
+			else if (p == 1) b = part;
+			else states = parseInt(part, rule);
+		}
+		if (b == null || s == null || states < 2) throw new IllegalArgumentException("Unrecognized rule " + rule);
+		return new LifeRule(rule.trim(), states, 1, vonNeumann, false,
+				digits(b, maxCount, rule), digits(s, maxCount, rule));
+	}
+
+	private static LifeRule parseLargerThanLife(String rule, String spec) {
+		int range = -1, states = 2;
+		boolean countSelf = false, vonNeumann = false;
+		int[] s = null, b = null;
+		for (String part : spec.split(",")) {
+			if (part.isEmpty()) throw new IllegalArgumentException("Unrecognized rule " + rule);
+			char field = part.charAt(0);
+			String value = part.substring(1);
+			if (field == 'R') range = parseInt(value, rule);
+			else if (field == 'C') states = Math.max(2, parseInt(value, rule));
+			else if (field == 'M') countSelf = parseInt(value, rule) == 1;
+			else if (field == 'S') s = interval(value, rule);
+			else if (field == 'B') b = interval(value, rule);
+			else if (field == 'N') vonNeumann = value.equals("N");
+			else throw new IllegalArgumentException("Unrecognized rule " + rule);
+		}
+		if (range < 1 || s == null || b == null) throw new IllegalArgumentException("Unrecognized rule " + rule);
+		int side = 2 * range + 1;
+		int maxCount = vonNeumann ? 2 * range * (range + 1) : side * side - 1;
+		if (countSelf) maxCount++;
+		return new LifeRule(rule.trim(), states, range, vonNeumann, countSelf,
+				counts(b, maxCount, rule), counts(s, maxCount, rule));
+	}
+
+	private static int parseInt(String value, String rule) {
+		try { return Integer.parseInt(value); }
+		catch (NumberFormatException e) { throw new IllegalArgumentException("Unrecognized rule " + rule, e); }
+	}
+
+	private static boolean[] digits(String value, int maxCount, String rule) {
+		boolean[] set = new boolean[maxCount + 1];
+		for (char ch : value.toCharArray()) {
+			int n = ch - '0';
+			if (n < 0 || n > maxCount) throw new IllegalArgumentException("Neighbor count out of range in rule " + rule);
+			set[n] = true;
+		}
+		return set;
+	}
+
+	private static int[] interval(String value, String rule) {
+		String[] ends = value.split("\\.\\.");
+		if (ends.length != 2) throw new IllegalArgumentException("Unrecognized rule " + rule);
+		return new int[] {parseInt(ends[0], rule), parseInt(ends[1], rule)};
+	}
+
+	private static boolean[] counts(int[] interval, int maxCount, String rule) {
+		if (interval[0] < 0 || interval[1] > maxCount) throw new IllegalArgumentException("Neighbor count out of range in rule " + rule);
+		boolean[] set = new boolean[maxCount + 1];
+		for (int n = interval[0]; n <= interval[1]; n++) set[n] = true;
+		return set;
+	}
+
+	// Two states, range one Moore neighbourhood: the rules the bit-packed kernels run
+	public boolean isLifeLike() {
+		return states == 2 && range == 1 && !vonNeumann && !countSelf;
+	}
+
+	public boolean isConway() {
+		return isLifeLike() && getBirthMask() == 1 << 3 && getSurviveMask() == (1 << 2 | 1 << 3);
+	}
+
+	// Whether dead cells with no live neighbors are born, which makes empty space change
+	public boolean birthOnZero() {
+		return birth[0];
+	}
+
+	// Birth counts as bits of an int (bit n set if a dead cell with n neighbors is born)
+	public int getBirthMask() {
+		return mask(birth);
+	}
+
+	// Survival counts as bits of an int
+	public int getSurviveMask() {
+		return mask(survive);
+	}
+
+	private static int mask(boolean[] set) {
+		int mask = 0;
+		for (int n = 0; n < set.length && n < 32; n++) if (set[n]) mask |= 1 << n;
+		return mask;
+	}
+
+	public int getStates() {
+		return states;
+	}
+
+	public int getRange() {
+		return range;
+	}
+
+	public boolean isVonNeumann() {
+		return vonNeumann;
+	}
+
+	public boolean countsSelf() {
+		return countSelf;
+	}
+
+	public int[][] getOffsets() {
+		return offsets;
+	}
+
+	public int getMaxCount() {
+		return maxCount;
+	}
+
+	// Lookup table for the kernels: next state = table[state * (getMaxCount() + 1) + count]
+	public byte[] getTable() {
+		return table;
+	}
+
+	public int next(int state, int count) {
+		return table[state * (maxCount + 1) + count];
+	}
+
+	// The same rule, however it was written ("B3/S23" and "23/3" are equal)
+	public boolean equals(Object other) {
+		if (!(other instanceof LifeRule)) return false;
+		LifeRule rule = (LifeRule) other;
+		return states == rule.states && range == rule.range && vonNeumann == rule.vonNeumann && countSelf == rule.countSelf
+				&& Arrays.equals(birth, rule.birth) && Arrays.equals(survive, rule.survive);
+	}
+
+	public int hashCode() {
+		return ((states * 31 + range) * 31 + Arrays.hashCode(birth)) * 31 + Arrays.hashCode(survive);
+	}
+
+	public String toString() {
+		return name;
+	}
+
+}
@@ -0,0 +1,412 @@
+/**
+ *
+ * Headless Game of Life on a bit-packed torus (see LifeGrid)
+ * Steps either sparsely (only tiles near last generation's changes, see SparseStepper) or in
+ * parallel row bands, and can jump 2^k generations at once with HashLife
+ * With cycle detection on, each step updates a hash of the board from the words it changed and
+ * looks it up among recent generations, so still lifes and oscillators are noticed as soon as
+ * they repeat and advance() can skip their remaining generations
+ * With a history, recent generations are kept (see GenerationHistory) and seek() moves back or
+ * forward among them
+ * Unbounded, it runs on an infinite plane (see LifePlane) instead, and the grid is a window onto
+ * the plane: refreshed after every step, and written back by invalidate() after an edit
+ * With temporal blocking on, step(n) advances the torus several generations per pass over the
+ * board (see TemporalStepper) when nothing needs to see every generation
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class LifeSimulation implements Simulation {
+
+	private final LifeRule rule;
+	private final ParallelStepper stepper;
+	private final SparseStepper sparse;
+	private HashLife hashLife;
+
+	// Current generation, and the previous generation once a step has been taken
+	private LifeGrid worldState, buff;
+	private boolean sparseStep = true;
+	private long generation;
+
+	// Cells born and cells that died in the last step, as counted by the step kernel, and the live
+	// cell count they keep up to date (-1 after an edit, until it is next asked for)
+	private long births, deaths;
+	private long population = -1;
+	private final AtomicLong bandBirths = new AtomicLong(), bandDeaths = new AtomicLong();
+
+	// Hash of the current generation (see LifeGrid.hash) while cycle detection is on, and whether
+	// it is up to date; the period found is read by the sketches on another thread
+	private CycleDetector cycles;
+	private long hash;
+	private boolean hashed;
+	private final AtomicLong bandHash = new AtomicLong();
+	private volatile long period, cycleStart = -1;
+
+	// Past generations, and whether the current grid is the one the history holds for this generation
+	private GenerationHistory history;
+	private boolean recorded;
+
+	// The plane when unbounded, and the top left corner of the window onto it
+	private LifePlane plane;
+	private int viewX, viewY;
+
+	// Steps several generations a pass for step(n), and the stepper it splits its bands on, or null
+	private TemporalStepper temporal;
+	private ParallelStepper temporalBands;
+
+	public LifeSimulation(int width, int height, LifeRule rule) {
+		this(width, height, rule, new ParallelStepper(32));
+	}
+
+	public LifeSimulation(int width, int height, LifeRule rule, ParallelStepper stepper) {
+		this.rule = rule;
+		worldState = new LifeGrid(width, height);
+		buff = new LifeGrid(width, height);
+		this.stepper = stepper;
+		sparse = new SparseStepper(width, height, stepper);
+	}
+
+	public LifeRule getRule() {
+		return rule;
+	}
+
+	// Current generation; call invalidate() after editing it
+	public LifeGrid getGrid() {
+		return worldState;
+	}
+
+	// Generation before the current one (only meaningful straight after step())
+	public LifeGrid getPrevious() {
+		return buff;
+	}
+
+	public SparseStepper getSparse() {
+		return sparse;
+	}
+
+	public boolean isSparse() {
+		return sparseStep;
+	}
+
+	public void setSparse(boolean sparseStep) {
+		this.sparseStep = sparseStep;
+		sparse.invalidate();
+	}
+
+	// Tell the sparse stepper (and the population count and cycle detection) the grid was edited
+	// from outside; unbounded, this writes the grid back into its window onto the plane
+	public void invalidate() {
+		if (plane != null) plane.paste(worldState, viewX, viewY);
+		sparse.invalidate();
+		population = -1;
+		hashed = false;
+		if (cycles != null) cycles.reset();
+		period = 0;
+		cycleStart = -1;
+		recorded = false;
+	}
+
+	/**
+	 *  Run on an unbounded plane rather than the torus, or go back to the torus. The grid's
+	 *  cells carry over, at the top left corner of the plane's window or as the torus itself.
+	 *  History and HashLife jumps are torus only: unbounded, seek() finds nothing and jump()
+	 *  steps one generation at a time.
+	 */
+	public void setUnbounded(boolean unbounded) {
+		if (unbounded == (plane != null)) return;
+		if (unbounded) {
+			plane = new LifePlane();
+			viewX = 0;
+			viewY = 0;
+		}
+		else plane = null;
+		invalidate();
+	}
+
+	public boolean isUnbounded() {
+		return plane != null;
+	}
+
+	// The plane when unbounded, otherwise null
+	public LifePlane getPlane() {
+		return plane;
+	}
+
+	// Move the window onto the plane so its top left corner is cell (x, y), and show it in the grid
+	public void setView(int x, int y) {
+		if (plane == null) return;
+		viewX = x;
+		viewY = y;
+		plane.copyTo(worldState, x, y);
+	}
+
+	public int getViewX() {
+		return viewX;
+	}
+
+	public int getViewY() {
+		return viewY;
+	}
+
+	// Keep recent generations for seek() in at most maxBytes, or none (0)
+	public void setHistory(long maxBytes) {
+		history = maxBytes > 0 ? new GenerationHistory(worldState.getWidth(), worldState.getHeight(), maxBytes, 64) : null;
+		recorded = false;
+	}
+
+	public GenerationHistory getHistory() {
+		return history;
+	}
+
+	// Go back (or forward again) to a generation the history holds, returning false if it holds none
+	public boolean seek(long target) {
+		if (plane != null || history == null || !history.contains(target)) return false;
+		history.seek(worldState, recorded ? generation : -1, target);
+		generation = target;
+		invalidate();
+		recorded = true;
+		return true;
+	}
+
+	// Look for cycles among the last window generations, or stop looking (window 0)
+	public void setCycleDetection(int window) {
+		cycles = window > 0 ? new CycleDetector(window) : null;
+		hashed = false;
+		period = 0;
+		cycleStart = -1;
+	}
+
+	public boolean isCycleDetection() {
+		return cycles != null;
+	}
+
+	// Period of the cycle the board has settled into (1 for a still life, including an empty
+	// board), or 0 if none has been found or detection is off
+	public long getPeriod() {
+		return period;
+	}
+
+	// First generation of that cycle, or -1
+	public long getCycleStart() {
+		return cycleStart;
+	}
+
+	// Hash of the current generation (see LifeGrid.hash, LifePlane.hash)
+	public long getHash() {
+		if (cycles != null && hashed) return hash;
+		return plane != null ? plane.hash() : worldState.hash();
+	}
+
+	/**
+	 *  Step n generations at once with temporal blocking, depth generations a pass (0 to tune it
+	 *  to the L2 cache, see TemporalStepper.tuned), or one at a time (-1, the default).
+	 */
+	public void setTemporalBlocking(int depth) {
+		temporal = depth < 0 ? null : TemporalStepper.tuned(worldState.getWidth(), worldState.getHeight(), depth);
+		temporalBands = stepper.withMinBand(1);
+	}
+
+	public TemporalStepper getTemporalBlocking() {
+		return temporal;
+	}
+
+	/**
+	 *  Step n generations. With temporal blocking on, a torus with no cycle detection or history
+	 *  (which both need every generation) is stepped up to its depth a pass, so births and deaths
+	 *  are those of the last generation and getPrevious() is the generation before the last pass.
+	 */
+	public void step(long n) {
+		boolean blocking = temporal != null && temporal.getDepth() > 1 && plane == null && cycles == null && history == null;
+		for (; n > 0 && !blocking; n--) step();
+		while (n > 0) {
+			int generations = (int) Math.min(n, temporal.getDepth());
+			long[] tally = new long[2];
+			population = temporal.step(worldState, buff, rule, generations, temporalBands, tally);
+			LifeGrid temp = worldState;
+			worldState = buff;
+			buff = temp;
+			births = tally[0];
+			deaths = tally[1];
+			sparse.invalidate();
+			generation += generations;
+			n -= generations;
+		}
+	}
+
+	/**
+	 *  Run until generation target. Once a cycle has been found the generations left are
+	 *  skipped a whole period at a time, and only the remainder is stepped; without one this
+	 *  is just repeated step(). Returns the number of generations actually stepped.
+	 */
+	public long advance(long target) {
+		long stepped = 0;
+		while (generation < target) {
+			if (period > 0) {
+				long skip = (target - generation) / period * period;
+				generation += skip;
+				if (generation == target) break;
+			}
+			step();
+			stepped++;
+		}
+		return stepped;
+	}
+
+	public void step() {
+		if (plane != null) {
+			stepPlane();
+			return;
+		}
+		LifeGrid src = worldState, dst = buff;
+		boolean hashing = cycles != null;
+		if (history != null && !recorded) history.record(src, generation);
+		if (hashing && !hashed) {
+			hash = src.hash();
+			hashed = true;
+			cycles.record(generation, hash);
+		}
+		if (sparseStep) {
+			sparse.step(src, dst, rule);
+			births = sparse.getBirths();
+			deaths = sparse.getDeaths();
+
+			// Only the tiles that changed can change the hash
+			if (hashing) {
+				int tilesX = sparse.getTilesX(), height = src.getHeight();
+				for (int k = 0; k < sparse.getChangedCount(); k++) {
+					int tile = sparse.getChangedTile(k), ty = tile / tilesX, w = tile - ty * tilesX;
+					hash ^= dst.hashChange(src, ty * SparseStepper.TILE_ROWS,
+							Math.min(height, (ty + 1) * SparseStepper.TILE_ROWS), w, w + 1);
+				}
+			}
+		}
+		else {
+			bandBirths.set(0);
+			bandDeaths.set(0);
+			bandHash.set(0);
+			stepper.step(src.getHeight(), (from, to) -> {
+				long[] tally = new long[2];
+				src.stepRows(dst, rule, from, to, tally);
+				bandBirths.addAndGet(tally[0]);
+				bandDeaths.addAndGet(tally[1]);
+
+				// Hash the band's changes while its rows are still in cache
+				if (hashing) {
+					long change = dst.hashChange(src, from, to, 0, src.getWordsPerRow());
+					bandHash.accumulateAndGet(change, (x, y) -> x ^ y);
+				}
+			});
+			births = bandBirths.get();
+			deaths = bandDeaths.get();
+			hash ^= bandHash.get();
+		}
+		if (population >= 0) population += births - deaths;
+		worldState = dst;
+		buff = src;
+		generation++;
+		if (history != null) {
+			history.record(dst, generation);
+			recorded = true;
+		}
+		recordCycle();
+	}
+
+	// Step the plane and show the next generation in the window onto it
+	private void stepPlane() {
+		boolean hashing = cycles != null;
+		if (hashing && !hashed) {
+			hash = plane.hash();
+			hashed = true;
+			cycles.record(generation, hash);
+		}
+		plane.step(rule, stepper, hashing);
+		births = plane.getBirths();
+		deaths = plane.getDeaths();
+		if (hashing) hash ^= plane.getHashChange();
+		plane.copyTo(worldState, viewX, viewY);
+		generation++;
+		recordCycle();
+	}
+
+	// Look the new generation's hash up among the last, if detecting cycles and none is found yet
+	private void recordCycle() {
+		if (cycles != null && period == 0 && cycles.record(generation, hash) > 0) {
+			cycleStart = cycles.getStart();
+			period = cycles.getPeriod();
+		}
+	}
+
+	// Advance 2^k generations at once (one at a time when unbounded)
+	public void jump(int k) {
+		if (plane != null) {
+			for (long n = 1L << k; n > 0; n--) step();
+			return;
+		}
+		if (hashLife == null) hashLife = new HashLife(rule);
+		long live = hashLife.jump(worldState, worldState, k);
+		invalidate();
+		population = live;
+
+		// No single generation was stepped, so there are no births or deaths to report
+		births = 0;
+		deaths = 0;
+		generation += 1L << k;
+	}
+
+	public void fillRandom(Random r, double initProb) {
+		for (int i = 0; i < worldState.getWidth(); i++) {
+			for (int j = 0; j < worldState.getHeight(); j++) {
+				if (r.nextFloat() < initProb) worldState.set(i, j, true);
+			}
+		}
+		invalidate();
+	}
+
+	// Live cells; only counted in full after an edit
+	public long getPopulation() {
+		if (plane != null) return plane.getPopulation();
+		if (population < 0) {
+			long count = 0;
+			for (long word : worldState.getWords()) count += Long.bitCount(word);
+			population = count;
+		}
+		return population;
+	}
+
+	public long getBirths() {
+		return births;
+	}
+
+	public long getDeaths() {
+		return deaths;
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public String[] getStatNames() {
+		return new String[] {"population", "births", "deaths"};
+	}
+
+	public long[] getStats() {
+		return new long[] {getPopulation(), births, deaths};
+	}
+
+	// Format chosen by extension (see BoardIO.write); unbounded, the rectangle around every live cell
+	public void saveSnapshot(File file) throws IOException {
+		int[] bounds = plane != null ? plane.getBounds() : null;
+		if (bounds == null) {
+			BoardIO.write(worldState, file, rule);
+			return;
+		}
+		LifeGrid live = new LifeGrid(bounds[2] - bounds[0] + 1, bounds[3] - bounds[1] + 1);
+		plane.copyTo(live, bounds[0], bounds[1]);
+		BoardIO.write(live, file, rule);
+	}
+
+}
@@ -0,0 +1,94 @@
+/**
+ *
+ * Hash map from long keys to non-negative int values, with no boxing
+ * Open addressing with linear probing; removal shifts later entries back instead of leaving
+ * tombstones, so lookups stay short however many entries come and go
+ * Safe for any number of concurrent readers while nothing writes
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class LongIntMap {
+
+	private static final int EMPTY = -1;
+
+	private long[] keys;
+	private int[] values;
+	private int mask, size;
+
+	public LongIntMap() {
+		keys = new long[16];
+		values = new int[16];
+		Arrays.fill(values, EMPTY);
+		mask = 15;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	// Value for key, or -1 if there is none
+	public int get(long key) {
+		for (int slot = home(key); ; slot = (slot + 1) & mask) {
+			if (values[slot] == EMPTY || keys[slot] == key) return values[slot];
+		}
+	}
+
+	public void put(long key, int value) {
+		if (value < 0) throw new IllegalArgumentException("Values must be non-negative");
+		if (2 * (size + 1) > keys.length) resize(keys.length * 2);
+		int slot = find(key);
+		if (values[slot] == EMPTY) size++;
+		keys[slot] = key;
+		values[slot] = value;
+	}
+
+	public void remove(long key) {
+		int hole = find(key);
+		if (values[hole] == EMPTY) return;
+		size--;
+		for (int slot = (hole + 1) & mask; values[slot] != EMPTY; slot = (slot + 1) & mask) {
+			int home = home(keys[slot]);
+			if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+				keys[hole] = keys[slot];
+				values[hole] = values[slot];
+				hole = slot;
+			}
+		}
+		values[hole] = EMPTY;
+	}
+
+	public void clear() {
+		Arrays.fill(values, EMPTY);
+		size = 0;
+	}
+
+	// Slot holding key, or the free slot where it would go
+	private int find(long key) {
+		int slot = home(key);
+		while (values[slot] != EMPTY && keys[slot] != key) slot = (slot + 1) & mask;
+		return slot;
+	}
+
+	private int home(long key) {
+		return (int) CellRandom.mix(key) & mask;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new long[capacity];
+		values = new int[capacity];
+		Arrays.fill(values, EMPTY);
+		mask = capacity - 1;
+		for (int k = 0; k < oldKeys.length; k++) {
+			if (oldValues[k] != EMPTY) {
+				int slot = find(oldKeys[k]);
+				keys[slot] = oldKeys[k];
+				values[slot] = oldValues[k];
+			}
+		}
+	}
+
+}
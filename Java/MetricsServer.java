@@ -0,0 +1,65 @@
+/**
+ *
+ * Serves a simulation's metrics in the Prometheus text format at http://localhost:<port>/metrics
+ * Bound to the loopback interface only; scrape it with Prometheus or just curl it
+ *
+ **/
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+public final class MetricsServer {
+
+	private final HttpServer server;
+	private final SimulationMetrics metrics;
+
+	public MetricsServer(SimulationMetrics metrics, int port) throws IOException {
+		this.metrics = metrics;
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+		server.createContext("/metrics", this::handle);
+	}
+
+	// Register metrics over JMX and, for port > 0, serve them over HTTP too; a port already in use
+	// is reported and otherwise ignored, as metrics are never worth stopping a sketch for
+	// Returns the running server, or null if there is none
+	public static MetricsServer publish(SimulationMetrics metrics, int port) {
+		metrics.register();
+		if (port <= 0) return null;
+		try {
+			MetricsServer server = new MetricsServer(metrics, port);
+			server.start();
+			return server;
+		}
+		catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	// Start serving on a background thread
+	public void start() {
+		server.start();
+	}
+
+	public void stop() {
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		StringBuilder text = new StringBuilder();
+		metrics.writePrometheus(text);
+		byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+		exchange.sendResponseHeaders(200, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+}
@@ -0,0 +1,192 @@
+/**
+ *
+ * A Life torus stored outside the Java heap, as LifeGrid lays it out: rows of 64-cell words, bit x
+ * of a word cell x, with the bits past the end of each row zero
+ * Either direct memory, or a binary board file (see BoardIO) mapped in place, so the board lives
+ * in the page cache, is never scanned or moved by the garbage collector, and can be larger than
+ * the heap. Rows are kept in buffers of whole rows up to 1 GB each, as one buffer can't pass 2 GB
+ * It is stepped in place through the same kernels as LifeGrid, a cache-sized band at a time (see
+ * TemporalStepper.stepInPlace), so a snapshot on disk can be run on without loading it
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+public final class OffHeapGrid {
+
+	private static final long BUFFER_BYTES = 1L << 30;
+
+	private final int width, height, wordsPerRow, rowsPerBuffer;
+	private final long lastMask;
+
+	// Rows [k * rowsPerBuffer, (k + 1) * rowsPerBuffer) are in buffers[k]; mapped keeps the file's
+	// buffers (null for direct memory) to be forced to disk
+	private final LongBuffer[] buffers;
+	private final MappedByteBuffer[] mapped;
+
+	private OffHeapGrid(int width, int height, boolean file) {
+		if (width < 1 || height < 1) throw new IllegalArgumentException("Grid must be at least 1x1");
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.rowsPerBuffer = (int) Math.max(1, BUFFER_BYTES / (8L * wordsPerRow));
+		this.lastMask = -1L >>> (63 - ((width - 1) & 63));
+		int count = (height + rowsPerBuffer - 1) / rowsPerBuffer;
+		buffers = new LongBuffer[count];
+		mapped = file ? new MappedByteBuffer[count] : null;
+	}
+
+	// An empty board in direct memory (limited by -XX:MaxDirectMemorySize, which defaults to the heap size)
+	public static OffHeapGrid allocate(int width, int height) {
+		OffHeapGrid grid = new OffHeapGrid(width, height, false);
+		for (int k = 0; k < grid.buffers.length; k++) {
+			grid.buffers[k] = ByteBuffer.allocateDirect(8 * grid.wordsPerRow * grid.rowsIn(k))
+					.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		}
+		return grid;
+	}
+
+	// A binary board file, mapped read and write: every change to the grid is a change to the file
+	public static OffHeapGrid map(File file) throws IOException {
+		int[] size = BoardIO.readBinarySize(file);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			OffHeapGrid grid = new OffHeapGrid(size[0], size[1], true);
+			grid.map(channel);
+			grid.clearPadding();
+			return grid;
+		}
+	}
+
+	// A new, empty binary board file, mapped; the file is sparse until cells are written
+	public static OffHeapGrid create(File file, int width, int height) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer header = BoardIO.binaryHeader(width, height);
+			while (header.hasRemaining()) channel.write(header);
+			OffHeapGrid grid = new OffHeapGrid(width, height, true);
+			grid.map(channel);
+			return grid;
+		}
+	}
+
+	// Mapping past the end of the file grows it
+	private void map(FileChannel channel) throws IOException {
+		for (int k = 0; k < buffers.length; k++) {
+			mapped[k] = channel.map(FileChannel.MapMode.READ_WRITE, BoardIO.binaryRowOffset(wordsPerRow, k * rowsPerBuffer),
+					8L * wordsPerRow * rowsIn(k));
+			buffers[k] = mapped[k].order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		}
+	}
+
+	private int rowsIn(int buffer) {
+		return Math.min(rowsPerBuffer, height - buffer * rowsPerBuffer);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getWordsPerRow() {
+		return wordsPerRow;
+	}
+
+	// Whether it is a mapped file
+	public boolean isMapped() {
+		return mapped != null;
+	}
+
+	public boolean get(int x, int y) {
+		return (buffers[y / rowsPerBuffer].get(index(x, y)) & (1L << x)) != 0;
+	}
+
+	public void set(int x, int y, boolean alive) {
+		LongBuffer buffer = buffers[y / rowsPerBuffer];
+		int index = index(x, y);
+		if (alive) buffer.put(index, buffer.get(index) | (1L << x));
+		else buffer.put(index, buffer.get(index) & ~(1L << x));
+	}
+
+	private int index(int x, int y) {
+		return (y % rowsPerBuffer) * wordsPerRow + (x >>> 6);
+	}
+
+	// Copy rows [y, y + count) into words from index at
+	public void readRows(int y, int count, long[] words, int at) {
+		while (count > 0) {
+			int rows = Math.min(count, rowsPerBuffer - y % rowsPerBuffer);
+			buffers[y / rowsPerBuffer].get((y % rowsPerBuffer) * wordsPerRow, words, at, rows * wordsPerRow);
+			y += rows;
+			at += rows * wordsPerRow;
+			count -= rows;
+		}
+	}
+
+	// Copy words from index at over rows [y, y + count)
+	public void writeRows(int y, int count, long[] words, int at) {
+		while (count > 0) {
+			int rows = Math.min(count, rowsPerBuffer - y % rowsPerBuffer);
+			buffers[y / rowsPerBuffer].put((y % rowsPerBuffer) * wordsPerRow, words, at, rows * wordsPerRow);
+			y += rows;
+			at += rows * wordsPerRow;
+			count -= rows;
+		}
+	}
+
+	// The whole board into a grid of the same size, or from one
+	public void copyTo(LifeGrid grid) {
+		checkSize(grid);
+		readRows(0, height, grid.getWords(), 0);
+	}
+
+	public void copyFrom(LifeGrid grid) {
+		checkSize(grid);
+		writeRows(0, height, grid.getWords(), 0);
+	}
+
+	private void checkSize(LifeGrid grid) {
+		if (grid.getWidth() != width || grid.getHeight() != height)
+			throw new IllegalArgumentException("Grid is " + grid.getWidth() + "x" + grid.getHeight() + ", not " + width + "x" + height);
+	}
+
+	// Live cells, counted a few rows at a time
+	public long getPopulation() {
+		int rows = Math.max(1, (1 << 17) / wordsPerRow);
+		long[] words = new long[rows * wordsPerRow];
+		long count = 0;
+		for (int y = 0; y < height; y += rows) {
+			int n = Math.min(rows, height - y);
+			readRows(y, n, words, 0);
+			for (int k = 0; k < n * wordsPerRow; k++) count += Long.bitCount(words[k]);
+		}
+		return count;
+	}
+
+	// Write a mapped file's changed pages out to disk
+	public void force() {
+		if (mapped == null) return;
+		for (MappedByteBuffer buffer : mapped) buffer.force();
+	}
+
+	// The kernels rely on the bits past the end of each row being zero, which a file needn't promise
+	private void clearPadding() {
+		if (lastMask == -1L) return;
+		for (int y = 0; y < height; y++) {
+			LongBuffer buffer = buffers[y / rowsPerBuffer];
+			int index = index(width - 1, y);
+			long word = buffer.get(index);
+			if ((word & ~lastMask) != 0) buffer.put(index, word & lastMask);
+		}
+	}
+
+}
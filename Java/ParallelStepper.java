@@ -0,0 +1,67 @@
+/**
+ *
+ * Steps a toroidal board in bands of rows (or columns) on a ForkJoinPool
+ * Every band reads the shared current generation, including the row on either side of it
+ * (its halo), and writes only its own rows of the buffer, so bands never race and the
+ * result is identical to a serial step
+ *
+ **/
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public final class ParallelStepper {
+
+	// Steps rows [from, to) of a board from its current state into its buffer
+	public interface Band {
+		void step(int from, int to);
+	}
+
+	private final ForkJoinPool pool;
+	private final int minBand;
+
+	public ParallelStepper(int minBand) {
+		this(ForkJoinPool.commonPool(), minBand);
+	}
+
+	public ParallelStepper(ForkJoinPool pool, int minBand) {
+		if (minBand < 1) throw new IllegalArgumentException("Bands must be at least one row");
+		this.pool = pool;
+		this.minBand = minBand;
+	}
+
+	// The same pool, splitting into bands of a different minimum size
+	public ParallelStepper withMinBand(int minBand) {
+		return new ParallelStepper(pool, minBand);
+	}
+
+	// Step all rows [0, size), splitting into bands no smaller than minBand
+	public void step(int size, Band band) {
+		if (size <= minBand || pool.getParallelism() < 2) band.step(0, size);
+		else pool.invoke(new BandTask(band, 0, size));
+	}
+
+	private final class BandTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final Band band;
+		private final int from, to;
+
+		BandTask(Band band, int from, int to) {
+			this.band = band;
+			this.from = from;
+			this.to = to;
+		}
+
+		protected void compute() {
+			if (to - from <= minBand) {
+				band.step(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new BandTask(band, from, mid), new BandTask(band, mid, to));
+		}
+
+	}
+
+}
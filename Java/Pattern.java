@@ -0,0 +1,106 @@
+/**
+ *
+ * An immutable Life pattern, kept as a bit-packed grid in each of its 8 orientations
+ * The orientations are worked out once, when the pattern is made, so placing it is just a
+ * word-level blit (LifeGrid.stamp) however it is turned
+ *
+ **/
+
+public final class Pattern {
+
+	private final String name;
+	private final int width, height;
+
+	// Cells and anchor offsets for each orientation, numbered as orientation() numbers them
+	private final LifeGrid[] cells = new LifeGrid[8];
+	private final int[] offsetX = new int[8], offsetY = new int[8];
+
+	public Pattern(String name, LifeGrid source) {
+		this.name = name;
+		this.width = source.getWidth();
+		this.height = source.getHeight();
+		for (int o = 0; o < 8; o++) {
+			int rotate = o & 3;
+			boolean turned = (rotate & 1) == 1;
+			LifeGrid oriented = new LifeGrid(turned ? height : width, turned ? width : height);
+			// Rotations 2 and 3 reach up and left of the anchor rather than down and right
+			if (rotate >= 2) {
+				offsetX[o] = 1 - oriented.getWidth();
+				offsetY[o] = 1 - oriented.getHeight();
+			}
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					if (!source.get(x, y)) continue;
+					int k = o >= 4 ? width - 1 - x : x;
+					int dx = rotate == 0 ? k : rotate == 1 ? y : rotate == 2 ? -k : -y;
+					int dy = rotate == 0 ? y : rotate == 1 ? k : rotate == 2 ? -y : -k;
+					oriented.set(dx - offsetX[o], dy - offsetY[o], true);
+				}
+			}
+			cells[o] = oriented;
+		}
+	}
+
+	// From an array indexed [x][y] with 1 for a live cell, as Shapes returns them
+	public static Pattern fromCells(String name, int[][] source) {
+		LifeGrid grid = new LifeGrid(source.length, source[0].length);
+		for (int x = 0; x < source.length; x++) {
+			for (int y = 0; y < source[x].length; y++) {
+				if (source[x][y] == 1) grid.set(x, y, true);
+			}
+		}
+		return new Pattern(name, grid);
+	}
+
+	/**
+	 *  Orientation number for a rotation and flip, matching the sketches' placement controls:
+	 *  the pattern is flipped left to right first, then rotate 1 and 3 swap its axes and rotate 2
+	 *  and 3 turn it to extend up and left of the anchor. The 8 combinations cover every rotation
+	 *  and reflection.
+	 */
+	public static int orientation(int rotate, boolean flip) {
+		return (rotate & 3) | (flip ? 4 : 0);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	// The pattern's cells turned to orientation, with their top left corner at the offsets below
+	public LifeGrid getCells(int orientation) {
+		return cells[orientation];
+	}
+
+	public int getOffsetX(int orientation) {
+		return offsetX[orientation];
+	}
+
+	public int getOffsetY(int orientation) {
+		return offsetY[orientation];
+	}
+
+	// Add the pattern's live cells to the grid, anchored at (x, y)
+	public void stamp(LifeGrid grid, int x, int y, int orientation) {
+		grid.stamp(cells[orientation], x + offsetX[orientation], y + offsetY[orientation], false);
+	}
+
+	// Kill every cell of the pattern's rectangle, anchored at (x, y)
+	public void erase(LifeGrid grid, int x, int y, int orientation) {
+		grid.stamp(cells[orientation], x + offsetX[orientation], y + offsetY[orientation], true);
+	}
+
+	// Replace whatever is under the pattern's rectangle with the pattern
+	public void place(LifeGrid grid, int x, int y, int orientation) {
+		erase(grid, x, y, orientation);
+		stamp(grid, x, y, orientation);
+	}
+
+}
@@ -0,0 +1,68 @@
+/**
+ *
+ * Patterns by name, each read and oriented once however often it is placed
+ * Starts out holding the Shapes patterns; pattern files (.rle, .csv or .bin) are added with load
+ * Safe to use from several threads at once
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class PatternLibrary {
+
+	public static final Pattern GLIDER_GUN = Pattern.fromCells("gliderGun", Shapes.getGliderGun());
+	public static final Pattern EATER = Pattern.fromCells("eater", Shapes.getEater());
+	public static final Pattern DETECTOR = Pattern.fromCells("detector", Shapes.getDetector());
+
+	private final Map<String, Pattern> patterns = new ConcurrentHashMap<>();
+
+	public PatternLibrary() {
+		add(GLIDER_GUN);
+		add(EATER);
+		add(DETECTOR);
+	}
+
+	public void add(Pattern pattern) {
+		patterns.put(pattern.getName(), pattern);
+	}
+
+	// The named pattern, or null if there is none
+	public Pattern get(String name) {
+		return patterns.get(name);
+	}
+
+	public TreeSet<String> getNames() {
+		return new TreeSet<>(patterns.keySet());
+	}
+
+	/**
+	 *  The pattern in file, named after the file without its extension. A name the library
+	 *  already holds is returned without reading the file again.
+	 */
+	public Pattern load(File file) throws IOException {
+		String name = file.getName();
+		if (name.lastIndexOf('.') > 0) name = name.substring(0, name.lastIndexOf('.'));
+		Pattern pattern = patterns.get(name);
+		if (pattern == null) {
+			pattern = new Pattern(name, BoardIO.read(file));
+			Pattern raced = patterns.putIfAbsent(name, pattern);
+			if (raced != null) pattern = raced;
+		}
+		return pattern;
+	}
+
+	// Load every pattern file in a directory
+	public void loadDirectory(File dir) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null) throw new IOException("Not a directory: " + dir);
+		for (File file : files) {
+			String name = file.getName().toLowerCase();
+			if (name.endsWith(".rle") || name.endsWith(".csv") || name.endsWith(".bin")) load(file);
+		}
+	}
+
+}
@@ -0,0 +1,266 @@
+/**
+ *
+ * State and rule set for the predator-prey variant of Life, on a 2D torus
+ * Each cell is one byte packing its prey, predator and moving-predator state, and the rules (with
+ * the board's PredPreyRules) are compiled into a transition table indexed by (cell, neighbor
+ * counts, incoming predator, random draw), so a step is a table lookup per cell
+ * Columns can be stepped independently (see ParallelStepper); each cell's random draw is a pure
+ * function of (seed, generation, cell) (see CellRandom), so any split gives the same board
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class PredPreyBoard {
+
+	private static final StepKernel KERNEL = Kernels.get();
+
+	// Packed cell: bit 0 prey, bit 1 predator, bit 2 predator moving, bits 3-4 the direction it moves
+	public static final int PREY = 1, PREDATOR = 2, MOVING = 4;
+	public static final int MOVING_UP = PREDATOR | MOVING, MOVING_DOWN = PREDATOR | MOVING | 1 << 3,
+			MOVING_LEFT = PREDATOR | MOVING | 2 << 3, MOVING_RIGHT = PREDATOR | MOVING | 3 << 3;
+
+	// Bits compared against the MOVING_ codes (everything but prey)
+	public static final int MOVER_MASK = 0x1E;
+
+	// Predator states as the rules below are written: up / down / left / right move the predator
+	// to the next cell in that direction (a cell sees its down neighbor moving up, and so on)
+	private static final int ALIVE = 1, DEAD = 0;
+	private static final int UP = 3, DOWN = 5, LEFT = 7, RIGHT = 9;
+
+	// Current cells and buffer for the next generation, column-major: cell (i, j) at i * boardHeight + j
+	private byte[] cells, buf;
+
+	// Next cell for table[((cell & 7) << 8 | counts) << 4 | incoming << 3 | bucket]
+	private final byte[] table;
+
+	// Thresholds the rules compare random draws against (at most seven, so a bucket fits in three
+	// bits), as 24-bit CellRandom values: a draw r = bits / 2^24 is below threshold t exactly when
+	// bits < ceil(t * 2^24)
+	private final int[] bucketBits;
+
+	// CellRandom key of the generation being stepped
+	private long randomKey;
+
+	// Statistics each step keeps as it reads the table, in the order of getTally(). A predator
+	// birth or death is a cell gaining or losing one, so moving predators count as both
+	public static final String[] TALLY_NAMES = {"prey", "predators", "movers", "preyBirths", "preyDeaths",
+			"predatorBirths", "predatorDeaths"};
+
+	// What one cell adds to each statistic, by its state before and after the step (the low three
+	// bits of each): one byte per statistic, so up to 255 cells are summed in a single long
+	private static final long[] TALLY = new long[64];
+	static {
+		for (int before = 0; before < 8; before++) {
+			for (int after = 0; after < 8; after++) {
+				boolean[] adds = {(after & PREY) != 0, (after & PREDATOR) != 0, (after & MOVING) != 0,
+						(after & ~before & PREY) != 0, (before & ~after & PREY) != 0,
+						(after & ~before & PREDATOR) != 0, (before & ~after & PREDATOR) != 0};
+				for (int k = 0; k < adds.length; k++) {
+					if (adds[k]) TALLY[before << 3 | after] |= 1L << (8 * k);
+				}
+			}
+		}
+	}
+
+	// Statistics of the last step; editing the board leaves them out of date until the next one
+	private final long[] tally = new long[TALLY_NAMES.length];
+	private boolean counted;
+
+	private final int boardLength, boardHeight;
+	private final PredPreyRules rules;
+
+	public PredPreyBoard(int boardLength, int boardHeight, int maxN) {
+		this(boardLength, boardHeight, PredPreyRules.DEFAULT.withMaxN(maxN));
+	}
+
+	public PredPreyBoard(int boardLength, int boardHeight, PredPreyRules rules) {
+		this.boardLength = boardLength;
+		this.boardHeight = boardHeight;
+		this.rules = rules;
+		cells = new byte[boardLength * boardHeight];
+		buf = new byte[boardLength * boardHeight];
+		double[] thresholds = rules.thresholds();
+		bucketBits = new int[thresholds.length];
+		for (int t = 0; t < thresholds.length; t++) bucketBits[t] = (int) Math.ceil(thresholds[t] * (1 << 24));
+		table = buildTable(rules, bucketBits);
+	}
+
+	public PredPreyRules getRules() {
+		return rules;
+	}
+
+	public int getLength() {
+		return boardLength;
+	}
+
+	public int getHeight() {
+		return boardHeight;
+	}
+
+	public boolean isPrey(int i, int j) {
+		return (cells[i * boardHeight + j] & PREY) != 0;
+	}
+
+	// True for live predators and for predators moving to a neighboring cell
+	public boolean isPredator(int i, int j) {
+		return (cells[i * boardHeight + j] & PREDATOR) != 0;
+	}
+
+	// Number of cells with any of the given state bits set, e.g. count(PREY)
+	public int count(int mask) {
+		int count = 0;
+		for (byte cell : cells) {
+			if ((cell & mask) != 0) count++;
+		}
+		return count;
+	}
+
+	// Whether getTally describes the current board (false after an edit)
+	public boolean isCounted() {
+		return counted;
+	}
+
+	// Statistics of the last step, named by TALLY_NAMES
+	public long[] getTally() {
+		return tally.clone();
+	}
+
+	public void setCell(int i, int j, boolean prey, boolean predator) {
+		cells[i * boardHeight + j] = (byte) ((prey ? PREY : 0) | (predator ? PREDATOR : 0));
+		counted = false;
+	}
+
+	// Copy another board's current state (not its buffer)
+	public void copyFrom(PredPreyBoard other) {
+		if (other.boardLength != boardLength || other.boardHeight != boardHeight)
+			throw new IllegalArgumentException("Board dimensions differ");
+		System.arraycopy(other.cells, 0, cells, 0, cells.length);
+		counted = false;
+	}
+
+	public void clear() {
+		Arrays.fill(cells, (byte) 0);
+		counted = false;
+	}
+
+	// Advance one generation, splitting the columns across the stepper's pool; cell i * boardHeight + j
+	// draws CellRandom.nextFloat(CellRandom.key(seed, generation), i * boardHeight + j)
+	public void step(long seed, long generation, ParallelStepper stepper) {
+		randomKey = CellRandom.key(seed, generation);
+		Arrays.fill(tally, 0);
+		stepper.step(boardLength, this::stepColumns);
+		byte[] temp = cells;
+		cells = buf;
+		buf = temp;
+		counted = true;
+	}
+
+	// Fill buffer columns [from, to) according to current state / rule set
+	public void stepColumns(int from, int to) {
+		byte[] counts = new byte[boardHeight], incoming = new byte[boardHeight];
+		long[] sums = new long[tally.length];
+		long key = randomKey;
+		for (int i = from; i < to; i++) {
+			int leftInd = (i == 0 ? boardLength : i) - 1;
+			int rightInd = (i + 1 == boardLength) ? 0 : i + 1;
+			int column = i * boardHeight;
+
+			// Neighborhoods for the whole column at once (vectorised when the kernel supports it)
+			KERNEL.neighbours(cells, leftInd * boardHeight, column, rightInd * boardHeight, boardHeight,
+					counts, incoming, 0, boardHeight);
+
+			// In runs of up to 255 cells, so no byte of the packed tally overflows
+			for (int start = 0; start < boardHeight; start += 255) {
+				long packed = 0;
+				for (int j = start, end = Math.min(boardHeight, start + 255); j < end; j++) {
+					int index = ((cells[column + j] & 7) << 8 | (counts[j] & 0xFF)) << 4 | incoming[j] << 3
+							| bucket(CellRandom.nextBits(key, column + j));
+					byte next = table[index];
+					buf[column + j] = next;
+
+					// The cell's old state is the top three bits of its index
+					packed += TALLY[index >>> 12 << 3 | next & 7];
+				}
+				for (int k = 0; k < sums.length; k++) sums[k] += packed >>> (8 * k) & 0xFF;
+			}
+		}
+		synchronized (tally) {
+			for (int k = 0; k < tally.length; k++) tally[k] += sums[k];
+		}
+	}
+
+	// Number of thresholds at or below a 24-bit draw
+	private int bucket(int bits) {
+		int[] bucketBits = this.bucketBits;
+		int bucket = 0;
+		for (int t = 0; t < bucketBits.length; t++) bucket += bits >= bucketBits[t] ? 1 : 0;
+		return bucket;
+	}
+
+	// Run the rules once for every combination a cell can see
+	private static byte[] buildTable(PredPreyRules rules, int[] bucketBits) {
+		byte[] table = new byte[8 << 8 << 4];
+		for (int cell = 0; cell < 8; cell++) {
+			int preyState = (cell & PREY) != 0 ? ALIVE : DEAD;
+			int predState = (cell & PREDATOR) == 0 ? DEAD : (cell & MOVING) == 0 ? ALIVE : UP;
+			for (int prey = 0; prey <= 8; prey++) {
+				for (int predators = 0; predators <= 8; predators++) {
+					for (int in = 0; in < 2; in++) {
+						for (int bucket = 0; bucket <= bucketBits.length; bucket++) {
+
+							// Lowest draw in the bucket, which compares like every other draw in it
+							double random = bucket == 0 ? 0 : bucketBits[bucket - 1] * 0x1.0p-24;
+							int next = rule(preyState, predState, prey, predators, in == 1, random, rules);
+							table[((cell << 8 | (prey + 16 * predators)) << 4) | in << 3 | bucket] = (byte) next;
+						}
+					}
+				}
+			}
+		}
+		return table;
+	}
+
+	// Variant rule set for one cell, returning its next packed state
+	private static int rule(int preyState, int predState, int prey, int predators, boolean incoming,
+			double random, PredPreyRules rules) {
+		int preyBuf = preyState, predBuf = predState;
+		if (predState > ALIVE) predBuf = DEAD;
+		if (incoming) predBuf = ALIVE;
+		if (predState == ALIVE && preyState == ALIVE) preyBuf = DEAD;
+		if (predators > 0) {
+			if (predators == 1 && prey > 3) predBuf = ALIVE;
+			else {
+				preyBuf = DEAD;
+				if (predators > 3) predBuf = DEAD;
+				if (prey == 0 && random < rules.getStarve()) predBuf = DEAD;
+			}
+		}
+		else if (predState == ALIVE && prey == 0 && preyState == DEAD) {
+			if (random < rules.getSurvive()) {
+				predBuf = DEAD;
+				if (random < rules.getMoveLeft()) predBuf = LEFT;
+				else if (random < rules.getMoveRight()) predBuf = RIGHT;
+				else if (random < rules.getMoveUp()) predBuf = UP;
+				else if (random < rules.getMove()) predBuf = DOWN;
+				else predBuf = ALIVE;
+			}
+			else predBuf = DEAD;
+		}
+		else {
+			if (prey < 2) preyBuf = DEAD;
+			else if (prey == 3) preyBuf = ALIVE;
+			else if (prey > rules.getMaxN()) preyBuf = DEAD;
+			if (random < rules.getPreyDeath()) preyBuf = DEAD;
+		}
+
+		int cell = preyBuf == ALIVE ? PREY : 0;
+		if (predBuf == ALIVE) cell |= PREDATOR;
+		else if (predBuf == UP) cell |= MOVING_UP;
+		else if (predBuf == DOWN) cell |= MOVING_DOWN;
+		else if (predBuf == LEFT) cell |= MOVING_LEFT;
+		else if (predBuf == RIGHT) cell |= MOVING_RIGHT;
+		return cell;
+	}
+
+}
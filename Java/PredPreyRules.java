@@ -0,0 +1,105 @@
+/**
+ *
+ * Parameters of the predator-prey rule set (see the Rules section of the README)
+ * The defaults are the values the game has always used; PredPreyBoard compiles a set of rules
+ * into its transition table, so changing them costs nothing per step
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class PredPreyRules {
+
+	public static final PredPreyRules DEFAULT = new PredPreyRules(5, 0.25, 0.6, 0.05, 0.05);
+
+	// Most prey neighbors a prey cell tolerates
+	private final int maxN;
+
+	// Probability a predator with neighboring predators but no prey dies
+	private final double starve;
+
+	// Probability an isolated predator moves (split evenly between left, right, up and down),
+	// and probability it dies instead
+	private final double move, isolatedDeath;
+
+	// Probability a prey cell that survives the other rules dies anyway
+	private final double preyDeath;
+
+	// Cut-offs the rules compare a draw against: an isolated predator moves left below moveLeft,
+	// right below moveRight, and so on, stays below survive, and dies above it
+	private final double moveLeft, moveRight, moveUp, survive;
+
+	public PredPreyRules(int maxN, double starve, double move, double isolatedDeath, double preyDeath) {
+		checkProbability("starve", starve);
+		checkProbability("move", move);
+		checkProbability("isolatedDeath", isolatedDeath);
+		checkProbability("preyDeath", preyDeath);
+		if (move + isolatedDeath > 1) throw new IllegalArgumentException("move + isolatedDeath exceeds 1");
+		this.maxN = maxN;
+		this.starve = starve;
+		this.move = move;
+		this.isolatedDeath = isolatedDeath;
+		this.preyDeath = preyDeath;
+		moveLeft = move / 4;
+		moveRight = move / 2;
+		moveUp = move * 3 / 4;
+		survive = 1 - isolatedDeath;
+	}
+
+	public PredPreyRules withMaxN(int maxN) {
+		return new PredPreyRules(maxN, starve, move, isolatedDeath, preyDeath);
+	}
+
+	public int getMaxN() {
+		return maxN;
+	}
+
+	public double getStarve() {
+		return starve;
+	}
+
+	public double getMove() {
+		return move;
+	}
+
+	public double getIsolatedDeath() {
+		return isolatedDeath;
+	}
+
+	public double getPreyDeath() {
+		return preyDeath;
+	}
+
+	double getMoveLeft() {
+		return moveLeft;
+	}
+
+	double getMoveRight() {
+		return moveRight;
+	}
+
+	double getMoveUp() {
+		return moveUp;
+	}
+
+	double getSurvive() {
+		return survive;
+	}
+
+	// Every probability a draw is compared against, in ascending order
+	double[] thresholds() {
+		double[] thresholds = {starve, preyDeath, moveLeft, moveRight, moveUp, move, survive};
+		Arrays.sort(thresholds);
+		return thresholds;
+	}
+
+	public String toString() {
+		return "maxN=" + maxN + " starve=" + starve + " move=" + move + " isolatedDeath=" + isolatedDeath
+				+ " preyDeath=" + preyDeath;
+	}
+
+	private static void checkProbability(String name, double p) {
+		if (!(p >= 0 && p <= 1)) throw new IllegalArgumentException(name + " must be between 0 and 1, got " + p);
+	}
+
+}
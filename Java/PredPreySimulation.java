@@ -0,0 +1,79 @@
+/**
+ *
+ * Headless predator-prey simulation (see PredPreyBoard), stepped in parallel column bands
+ * Runs are reproducible: the same seed and starting board always give the same generations
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public final class PredPreySimulation implements Simulation {
+
+	private final PredPreyBoard board;
+	private final ParallelStepper stepper;
+	private final long seed;
+
+	// Only used to populate the board; steps draw from CellRandom
+	private final Random r;
+	private long generation;
+
+	public PredPreySimulation(int boardLength, int boardHeight, int maxN, long seed) {
+		this(boardLength, boardHeight, PredPreyRules.DEFAULT.withMaxN(maxN), seed, new ParallelStepper(16));
+	}
+
+	public PredPreySimulation(int boardLength, int boardHeight, PredPreyRules rules, long seed,
+			ParallelStepper stepper) {
+		board = new PredPreyBoard(boardLength, boardHeight, rules);
+		this.stepper = stepper;
+		this.seed = seed;
+		r = new Random(seed);
+	}
+
+	// Current state; may be edited between steps
+	public PredPreyBoard getBoard() {
+		return board;
+	}
+
+	public void step() {
+		board.step(seed, generation, stepper);
+		generation++;
+	}
+
+	// Randomly populate state arrays
+	public void fillRandom(double initPrey, double initPred) {
+		for (int i = 0; i < board.getLength(); i++) {
+			for (int j = 0; j < board.getHeight(); j++) {
+				double random = r.nextFloat();
+				if (random < initPred) board.setCell(i, j, false, true);
+				else if (random < initPred + initPrey) board.setCell(i, j, true, false);
+			}
+		}
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public String[] getStatNames() {
+		return PredPreyBoard.TALLY_NAMES.clone();
+	}
+
+	/**
+	 *  Populations (movers are predators on their way to a neighboring cell, and count as
+	 *  predators too) and the cells that gained or lost prey or a predator, as kept by the last
+	 *  step. After an edit the populations are counted afresh and the changes are zero until the
+	 *  next step
+	 */
+	public long[] getStats() {
+		if (board.isCounted()) return board.getTally();
+		return new long[] {board.count(PredPreyBoard.PREY), board.count(PredPreyBoard.PREDATOR),
+				board.count(PredPreyBoard.MOVING), 0, 0, 0, 0};
+	}
+
+	public void saveSnapshot(File file) throws IOException {
+		BoardIO.writeCsv(board, file);
+	}
+
+}
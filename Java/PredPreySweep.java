@@ -0,0 +1,366 @@
+/**
+ *
+ * Runs a grid of headless PredPrey simulations, many at once, for studying which parameters give
+ * an equilibrium. Every combination of the listed values is run --replicates times, one run per
+ * thread at a time (each run steps serially, so cores are never shared between runs)
+ *
+ * Usage: java PredPreySweep --out DIR [options]
+ *   --width N, --height N        board size (default 180 x 100)
+ *   --generations N              generations per run (default 5000)
+ *   --replicates N               runs per combination, each with its own seed (default 1)
+ *   --seed N                     base seed; run k is seeded with CellRandom.key(seed, k) (default 1)
+ *   --threads N                  runs in progress at once (default: one per processor)
+ *   --maxN LIST                  prey crowding limit (default 5)
+ *   --prey LIST, --pred LIST     initial prey / predator probability (default 0.15 / 0.005)
+ *   --starve LIST                predator starvation probability (default 0.25)
+ *   --move LIST                  isolated predator move probability (default 0.6)
+ *   --isolated-death LIST        isolated predator death probability (default 0.05)
+ *   --prey-death LIST            prey death rate (default 0.05)
+ * A LIST is comma-separated values and/or inclusive ranges start:end:step, e.g. 4:7:1,9
+ *
+ * Output, in DIR:
+ *   runs.csv    one line per finished run: its parameters, seed, final populations, and where its
+ *               time series is in series.bin
+ *   series.bin  per run, the prey column then the predator column, generations + 1 values each
+ *               (generation 0 first), every value stored as the zigzag LEB128 varint of its
+ *               difference from the previous value in the column (the first from 0)
+ * Populations change slowly, so most values take one byte. Only finished runs are written, and each
+ * one only after its series is on disk, so an interrupted sweep is resumed by running the same
+ * command again: runs already in runs.csv are skipped and anything after them is discarded
+ *
+ **/
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public final class PredPreySweep {
+
+	private static final String USAGE = "Usage: java PredPreySweep --out DIR [--generations N] [--replicates N] [--maxN LIST] ...";
+
+	// Every option listed above
+	private static final Set<String> OPTIONS = new HashSet<String>(Arrays.asList("out", "width", "height", "generations",
+			"replicates", "seed", "threads", "maxN", "prey", "pred", "starve", "move", "isolated-death", "prey-death"));
+
+	private static final String HEADER = "run,seed,maxN,prey,pred,starve,move,isolatedDeath,preyDeath,"
+			+ "generations,finalPrey,finalPredators,offset,length";
+	private static final int FIELDS = HEADER.split(",").length;
+
+	// Bands larger than any board, so each run steps on the thread that owns it
+	private static final ParallelStepper SERIAL = new ParallelStepper(Integer.MAX_VALUE);
+
+	// One run of the sweep
+	private static final class Run {
+		final int id;
+		final long seed;
+		final PredPreyRules rules;
+		final double initPrey, initPred;
+
+		Run(int id, long seed, PredPreyRules rules, double initPrey, double initPred) {
+			this.id = id;
+			this.seed = seed;
+			this.rules = rules;
+			this.initPrey = initPrey;
+			this.initPred = initPred;
+		}
+
+		// Leading columns of its runs.csv line, which identify the run when resuming
+		String key() {
+			return id + "," + seed + "," + rules.getMaxN() + "," + initPrey + "," + initPred + ","
+					+ rules.getStarve() + "," + rules.getMove() + "," + rules.getIsolatedDeath() + ","
+					+ rules.getPreyDeath();
+		}
+	}
+
+	private final File dir;
+	private final int width, height, generations;
+	private final List<Run> runs;
+
+	// Output, appended to by one finished run at a time
+	private FileChannel series;
+	private BufferedWriter index;
+
+	private PredPreySweep(File dir, int width, int height, int generations, List<Run> runs) {
+		this.dir = dir;
+		this.width = width;
+		this.height = height;
+		this.generations = generations;
+		this.runs = runs;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = parseOptions(args);
+		if (!options.containsKey("out")) {
+			System.err.println(USAGE);
+			System.exit(2);
+		}
+		int width = Integer.parseInt(options.getOrDefault("width", "180"));
+		int height = Integer.parseInt(options.getOrDefault("height", "100"));
+		int generations = Integer.parseInt(options.getOrDefault("generations", "5000"));
+		int replicates = Integer.parseInt(options.getOrDefault("replicates", "1"));
+		long seed = Long.parseLong(options.getOrDefault("seed", "1"));
+		int threads = Integer.parseInt(options.getOrDefault("threads",
+				Integer.toString(Runtime.getRuntime().availableProcessors())));
+
+		double[] maxN = parseList(options.getOrDefault("maxN", "5"));
+		double[] prey = parseList(options.getOrDefault("prey", "0.15"));
+		double[] pred = parseList(options.getOrDefault("pred", "0.005"));
+		double[] starve = parseList(options.getOrDefault("starve", "0.25"));
+		double[] move = parseList(options.getOrDefault("move", "0.6"));
+		double[] isolatedDeath = parseList(options.getOrDefault("isolated-death", "0.05"));
+		double[] preyDeath = parseList(options.getOrDefault("prey-death", "0.05"));
+
+		// Every combination, in a fixed order so run ids (and so seeds) are the same on every resume
+		List<Run> runs = new ArrayList<Run>();
+		for (double n : maxN)
+			for (double p : prey)
+				for (double q : pred)
+					for (double s : starve)
+						for (double m : move)
+							for (double d : isolatedDeath)
+								for (double e : preyDeath) {
+									PredPreyRules rules = new PredPreyRules((int) n, s, m, d, e);
+									for (int k = 0; k < replicates; k++) {
+										int id = runs.size();
+										runs.add(new Run(id, CellRandom.key(seed, id), rules, p, q));
+									}
+								}
+
+		new PredPreySweep(new File(options.get("out")), width, height, generations, runs).run(threads);
+	}
+
+	// Run every run not already in the output directory, threads at a time
+	private void run(int threads) throws IOException, InterruptedException {
+		if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create output directory " + dir);
+		boolean[] done = resume();
+		int remaining = 0;
+		for (boolean d : done) remaining += d ? 0 : 1;
+		System.err.println(runs.size() + " runs, " + (runs.size() - remaining) + " already done");
+
+		// Workers claim runs in order rather than queueing them all, so memory stays at one board
+		// and one pair of series per thread however large the sweep
+		AtomicInteger next = new AtomicInteger(), finished = new AtomicInteger();
+		int total = remaining;
+		long start = System.nanoTime();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<Void>> workers = new ArrayList<Future<Void>>();
+		for (int t = 0; t < threads; t++) {
+			workers.add(pool.submit(() -> {
+				for (int k = next.getAndIncrement(); k < runs.size(); k = next.getAndIncrement()) {
+					if (done[k]) continue;
+					simulate(runs.get(k));
+					int count = finished.incrementAndGet();
+					if (count * 100L / total != (count - 1) * 100L / total || count == total) {
+						double seconds = (System.nanoTime() - start) / 1e9;
+						System.err.printf("%d / %d runs, %.0f s elapsed, %.0f s to go%n",
+								count, total, seconds, seconds / count * (total - count));
+					}
+				}
+				return null;
+			}));
+		}
+		pool.shutdown();
+		try {
+			for (Future<Void> worker : workers) worker.get();
+		}
+		catch (ExecutionException e) {
+			pool.shutdownNow();
+			throw new IOException("Sweep failed", e.getCause());
+		}
+		finally {
+			index.close();
+			series.close();
+		}
+	}
+
+	// Open the output for appending, returning which runs it already holds
+	private boolean[] resume() throws IOException {
+		File indexFile = new File(dir, "runs.csv"), seriesFile = new File(dir, "series.bin");
+		boolean[] done = new boolean[runs.size()];
+		List<String> kept = new ArrayList<String>();
+		long end = 0;
+		if (indexFile.exists()) {
+
+			// Only lines ending in a newline are whole: one cut short by an interruption (which may
+			// still split into every field, the last too short) is dropped, along with its series
+			String text = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.US_ASCII);
+			try (BufferedReader in = new BufferedReader(new StringReader(text.substring(0, text.lastIndexOf('\n') + 1)))) {
+				String line = in.readLine();
+				if (line != null && !line.equals(HEADER)) throw new IOException(indexFile + " is not a sweep index");
+				while ((line = in.readLine()) != null) {
+					String[] fields = line.split(",");
+					if (fields.length != FIELDS) throw new IOException("Malformed line in " + indexFile + ": " + line);
+					int id = Integer.parseInt(fields[0]);
+					if (id >= runs.size() || !line.startsWith(runs.get(id).key() + ","))
+						throw new IOException("Run " + id + " in " + indexFile + " has different parameters; "
+								+ "resume with the same options or use a new directory");
+					done[id] = true;
+					kept.add(line);
+					end = Math.max(end, Long.parseLong(fields[FIELDS - 2]) + Long.parseLong(fields[FIELDS - 1]));
+				}
+			}
+		}
+
+		// Rewrite the index with only complete lines, then cut series.bin back to the runs it names
+		File temp = new File(dir, "runs.csv.tmp");
+		try (BufferedWriter out = new BufferedWriter(new FileWriter(temp))) {
+			out.write(HEADER);
+			out.newLine();
+			for (String line : kept) {
+				out.write(line);
+				out.newLine();
+			}
+		}
+		Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		series = FileChannel.open(seriesFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		if (series.size() < end) throw new IOException(seriesFile + " is shorter than " + indexFile + " says");
+		series.truncate(end);
+		series.position(end);
+		index = new BufferedWriter(new FileWriter(indexFile, true));
+		return done;
+	}
+
+	// Step one run to the end, then append its series and index line
+	private void simulate(Run run) throws IOException {
+		PredPreySimulation sim = new PredPreySimulation(width, height, run.rules, run.seed, SERIAL);
+		sim.fillRandom(run.initPrey, run.initPred);
+		VarintColumn prey = new VarintColumn(), predators = new VarintColumn();
+		int preyCount = 0, predatorCount = 0;
+		for (int gen = 0; gen <= generations; gen++) {
+			if (gen > 0) sim.step();
+			long[] stats = sim.getStats();
+			preyCount = (int) stats[0];
+			predatorCount = (int) stats[1];
+			prey.add(preyCount);
+			predators.add(predatorCount);
+		}
+		append(run, preyCount, predatorCount, prey, predators);
+	}
+
+	private synchronized void append(Run run, int finalPrey, int finalPredators, VarintColumn prey,
+			VarintColumn predators) throws IOException {
+		long offset = series.position();
+		prey.writeTo(series);
+		predators.writeTo(series);
+
+		// The series must be on disk before the index line that points at it
+		series.force(false);
+		index.write(run.key() + "," + generations + "," + finalPrey + "," + finalPredators + "," + offset
+				+ "," + (series.position() - offset));
+		index.newLine();
+		index.flush();
+	}
+
+	/**
+	 *  Read back one run's series from series.bin, given the offset and generations from its line
+	 *  in runs.csv: {prey, predators}, each with generations + 1 values
+	 */
+	public static int[][] readSeries(File seriesFile, long offset, long length, int generations) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate((int) length);
+		try (FileChannel in = FileChannel.open(seriesFile.toPath(), StandardOpenOption.READ)) {
+			while (bytes.hasRemaining()) {
+				if (in.read(bytes, offset + bytes.position()) < 0) throw new IOException("Truncated " + seriesFile);
+			}
+		}
+		bytes.flip();
+		int[][] columns = new int[2][generations + 1];
+		for (int[] column : columns) {
+			int value = 0;
+			for (int gen = 0; gen <= generations; gen++) {
+				long raw = 0;
+				int b, shift = 0;
+				do {
+					b = bytes.get();
+					raw |= (long) (b & 0x7F) << shift;
+					shift += 7;
+				} while ((b & 0x80) != 0);
+				value += (int) (raw >>> 1) ^ -(int) (raw & 1);
+				column[gen] = value;
+			}
+		}
+		return columns;
+	}
+
+	// Growable column of zigzag varint deltas
+	private static final class VarintColumn {
+		private byte[] bytes = new byte[1024];
+		private int size, last;
+
+		void add(int value) {
+			int delta = value - last;
+			last = value;
+			int raw = (delta << 1) ^ (delta >> 31);
+			if (size + 5 > bytes.length) bytes = Arrays.copyOf(bytes, bytes.length * 2);
+			while ((raw & ~0x7F) != 0) {
+				bytes[size++] = (byte) (raw & 0x7F | 0x80);
+				raw >>>= 7;
+			}
+			bytes[size++] = (byte) raw;
+		}
+
+		void writeTo(FileChannel out) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes, 0, size);
+			while (buffer.hasRemaining()) out.write(buffer);
+		}
+	}
+
+	// "--name value" pairs; a misspelled axis would quietly sweep only its default, so an option not
+	// listed above exits instead
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int k = 0; k < args.length; k += 2) {
+			if (!args[k].startsWith("--") || k + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[k]);
+			if (!OPTIONS.contains(args[k].substring(2))) {
+				System.err.println("Unknown option " + args[k]);
+				System.err.println(USAGE);
+				System.exit(2);
+			}
+			options.put(args[k].substring(2), args[k + 1]);
+		}
+		return options;
+	}
+
+	// Comma-separated values and start:end:step ranges; ranges are stepped in decimal, so
+	// 0.05:0.25:0.05 gives exactly the five values it names
+	private static double[] parseList(String list) {
+		List<Double> values = new ArrayList<Double>();
+		for (String item : list.split(",")) {
+			String[] range = item.trim().split(":");
+			if (range.length == 1) values.add(Double.parseDouble(range[0]));
+			else if (range.length == 3) {
+				BigDecimal from = new BigDecimal(range[0]), to = new BigDecimal(range[1]);
+				BigDecimal step = new BigDecimal(range[2]);
+				if (step.signum() <= 0) throw new IllegalArgumentException("Range step must be positive: " + item);
+				for (BigDecimal v = from; v.compareTo(to) <= 0; v = v.add(step)) values.add(v.doubleValue());
+			}
+			else throw new IllegalArgumentException("Expected a value or start:end:step, got " + item);
+		}
+		double[] result = new double[values.size()];
+		for (int k = 0; k < result.length; k++) result[k] = values.get(k);
+		return result;
+	}
+
+}
@@ -0,0 +1,100 @@
+/**
+ *
+ * Byte-per-cell toroidal grid for rules the bit-packed LifeGrid can't run: Generations rules
+ * (more than two states), von Neumann neighbourhoods and larger ranges (see LifeRule)
+ * Neighbor counts come from running sums along each row, so a cell costs O(range) rather than
+ * O(range^2), and the next state is read straight out of the rule's lookup table
+ *
+ **/
+
+import java.util.Arrays;
+
+public final class RuleGrid {
+
+	private final int width, height;
+
+	// Row-major cell states
+	private final byte[] cells;
+
+	public RuleGrid(int width, int height) {
+		if (width < 1 || height < 1) throw new IllegalArgumentException("Grid must be at least 1x1");
+		this.width = width;
+		this.height = height;
+		this.cells = new byte[width * height];
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public byte[] getCells() {
+		return cells;
+	}
+
+	public int get(int x, int y) {
+		return cells[y * width + x];
+	}
+
+	public void set(int x, int y, int state) {
+		cells[y * width + x] = (byte) state;
+	}
+
+	public void clear() {
+		Arrays.fill(cells, (byte) 0);
+	}
+
+	public void copyFrom(RuleGrid other) {
+		if (other.width != width || other.height != height)
+			throw new IllegalArgumentException("Grid dimensions differ");
+		System.arraycopy(other.cells, 0, cells, 0, cells.length);
+	}
+
+	// Advance one generation, writing the result into dst
+	public void step(RuleGrid dst, LifeRule rule) {
+		stepRows(dst, rule, 0, height);
+	}
+
+	// Advance rows [from, to) one generation, writing the result into the same rows of dst
+	public void stepRows(RuleGrid dst, LifeRule rule, int from, int to) {
+		if (dst == this || dst.width != width || dst.height != height)
+			throw new IllegalArgumentException("Destination must be a distinct grid of the same size");
+		int range = rule.getRange(), stride = rule.getMaxCount() + 1;
+		byte[] table = rule.getTable(), out = dst.cells;
+		int[] counts = new int[width];
+		int[] sums = new int[width + 2 * range + 1];
+
+		for (int y = from; y < to; y++) {
+			Arrays.fill(counts, 0);
+			for (int dy = -range; dy <= range; dy++) {
+				int reach = rule.isVonNeumann() ? range - Math.abs(dy) : range;
+				rowSums(Math.floorMod(y + dy, height), range, sums);
+
+				// Live cells in the window [x - reach, x + reach] of this row
+				for (int x = 0; x < width; x++) counts[x] += sums[x + range + reach + 1] - sums[x + range - reach];
+			}
+
+			int row = y * width;
+			boolean countSelf = rule.countsSelf();
+			for (int x = 0; x < width; x++) {
+				int state = cells[row + x];
+				int count = countSelf ? counts[x] : counts[x] - (state == 1 ? 1 : 0);
+				out[row + x] = table[state * stride + count];
+			}
+		}
+	}
+
+	// Prefix sums of live cells along row y, padded by range cells on either side with wrap-around
+	private void rowSums(int y, int range, int[] sums) {
+		int row = y * width;
+		sums[0] = 0;
+		for (int i = 0; i < width + 2 * range; i++) {
+			int x = Math.floorMod(i - range, width);
+			sums[i + 1] = sums[i] + (cells[row + x] == 1 ? 1 : 0);
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/**
+ *
+ * Headless simulation for rules outside LifeGrid's reach (Generations, von Neumann,
+ * larger ranges), stepped in parallel row bands on a byte-per-cell RuleGrid
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+public final class RuleSimulation implements Simulation {
+
+	private final LifeRule rule;
+	private final ParallelStepper stepper;
+	private RuleGrid worldState, buff;
+	private long generation;
+
+	public RuleSimulation(int width, int height, LifeRule rule) {
+		this.rule = rule;
+		worldState = new RuleGrid(width, height);
+		buff = new RuleGrid(width, height);
+		stepper = new ParallelStepper(16);
+	}
+
+	public RuleGrid getGrid() {
+		return worldState;
+	}
+
+	public void step() {
+		RuleGrid src = worldState, dst = buff;
+		stepper.step(src.getHeight(), (from, to) -> src.stepRows(dst, rule, from, to));
+		worldState = dst;
+		buff = src;
+		generation++;
+	}
+
+	public void fillRandom(Random r, double initProb) {
+		for (int i = 0; i < worldState.getWidth(); i++) {
+			for (int j = 0; j < worldState.getHeight(); j++) {
+				if (r.nextFloat() < initProb) worldState.set(i, j, 1);
+			}
+		}
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public String[] getStatNames() {
+		return new String[] {"population"};
+	}
+
+	// Live cells (state 1; dying Generations states aren't counted)
+	public long[] getStats() {
+		long population = 0;
+		for (byte state : worldState.getCells()) if (state == 1) population++;
+		return new long[] {population};
+	}
+
+	public void saveSnapshot(File file) throws IOException {
+		BoardIO.writeCsv(worldState, file);
+	}
+
+}
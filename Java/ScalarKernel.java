@@ -0,0 +1,54 @@
+/**
+ *
+ * Plain Java StepKernel, used wherever the Vector API isn't available
+ *
+ **/
+
+public final class ScalarKernel implements StepKernel {
+
+	public long lifeWords(long[] src, long[] dst, int above, int row, int below, int from, int to,
+			boolean conway, int birth, int survive, long[] tally) {
+		long changed = 0, births = 0, deaths = 0;
+		for (int w = from; w < to; w++) {
+			long a = src[above + w], c = src[row + w], b = src[below + w];
+			long aw = (a << 1) | (src[above + w - 1] >>> 63);
+			long cw = (c << 1) | (src[row + w - 1] >>> 63);
+			long bw = (b << 1) | (src[below + w - 1] >>> 63);
+			long ae = (a >>> 1) | (src[above + w + 1] << 63);
+			long ce = (c >>> 1) | (src[row + w + 1] << 63);
+			long be = (b >>> 1) | (src[below + w + 1] << 63);
+			long next = conway ? LifeGrid.lifeWord(aw, a, ae, cw, c, ce, bw, b, be)
+					: LifeGrid.ruleWord(aw, a, ae, cw, c, ce, bw, b, be, birth, survive);
+			dst[row + w] = next;
+			long diff = next ^ c;
+			changed |= diff;
+			births += Long.bitCount(diff & next);
+			deaths += Long.bitCount(diff & c);
+		}
+		tally[0] += births;
+		tally[1] += deaths;
+		return changed;
+	}
+
+	public void neighbours(byte[] cells, int left, int center, int right, int height,
+			byte[] counts, byte[] incoming, int from, int to) {
+		for (int j = from; j < to; j++) {
+			int down = (j == 0 ? height : j) - 1;
+			int up = (j + 1 == height) ? 0 : j + 1;
+			counts[j] = (byte) (weight(cells[left + down]) + weight(cells[left + j]) + weight(cells[left + up])
+					+ weight(cells[center + down]) + weight(cells[center + up])
+					+ weight(cells[right + down]) + weight(cells[right + j]) + weight(cells[right + up]));
+			boolean in = (cells[left + j] & PredPreyBoard.MOVER_MASK) == PredPreyBoard.MOVING_RIGHT
+					|| (cells[right + j] & PredPreyBoard.MOVER_MASK) == PredPreyBoard.MOVING_LEFT
+					|| (cells[center + down] & PredPreyBoard.MOVER_MASK) == PredPreyBoard.MOVING_UP
+					|| (cells[center + up] & PredPreyBoard.MOVER_MASK) == PredPreyBoard.MOVING_DOWN;
+			incoming[j] = (byte) (in ? 1 : 0);
+		}
+	}
+
+	// 1 for prey, 16 for a predator (moving or not)
+	private static int weight(byte cell) {
+		return (cell & PredPreyBoard.PREY) | (cell & PredPreyBoard.PREDATOR) << 3;
+	}
+
+}
@@ -0,0 +1,262 @@
+/**
+ *
+ * Runs Life on a torus split across several worker processes (see ShardWorker), for boards larger
+ * than one JVM's heap
+ * The board is cut into bands of rows, one per worker. Every generation each worker swaps its top
+ * and bottom rows with the workers above and below it directly; the coordinator only steps in
+ * between runs of generations, which are its barriers: to sum the statistics, write snapshots
+ * (streamed from each worker in turn straight into one .bin file) and stop. The workers can be
+ * spawned here as local processes, or started by hand, on this machine or others, pointed at the
+ * coordinator's port; an input file must then be readable at the same path on every machine
+ *
+ * Usage: java ShardCoordinator [options]
+ *   --workers N                  worker processes (default 2)
+ *   --spawn true|false           start the workers here (default true), with this JVM's options
+ *   --worker-heap SIZE           maximum heap of each spawned worker, e.g. 8g
+ *   --port N                     port workers connect to (default: any free one, printed)
+ *   --width N, --height N        board size (default 180 x 100)
+ *   --generations N              generations to run (default 1000)
+ *   --rule RULE                  Life-like rulestring (default B3/S23, or the rule an .rle --input was
+ *                                saved with, which a different --rule is refused for)
+ *   --seed N, --density P        random starting board (default density 0.15); the same seed gives
+ *                                the same board however many workers there are
+ *   --input FILE                 start from a saved board instead; each worker maps only its own
+ *                                rows of a .bin file
+ *   --stats FILE                 statistics as CSV, as Headless writes them (default: standard output)
+ *   --stats-every N              write statistics every N generations (default 1)
+ *   --snapshots DIR              write .bin snapshots into DIR
+ *   --snapshot-every N           snapshot every N generations (default: final generation only)
+ *
+ **/
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+public final class ShardCoordinator {
+
+	// Every option listed above
+	private static final Set<String> OPTIONS = new HashSet<String>(Arrays.asList("workers", "spawn", "worker-heap",
+			"port", "width", "height", "generations", "rule", "seed", "density", "input", "stats", "stats-every",
+			"snapshots", "snapshot-every"));
+
+	private final SocketChannel[] workers;
+	private final int width, height;
+
+	// Totals of the last generation stepped, summed over the workers
+	private long generation, population, births, deaths;
+
+	private ShardCoordinator(SocketChannel[] workers, int width, int height) {
+		this.workers = workers;
+		this.width = width;
+		this.height = height;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = parseOptions(args);
+		int count = Integer.parseInt(options.getOrDefault("workers", "2"));
+		boolean spawn = Boolean.parseBoolean(options.getOrDefault("spawn", "true"));
+		int width = Integer.parseInt(options.getOrDefault("width", "180"));
+		int height = Integer.parseInt(options.getOrDefault("height", "100"));
+		long generations = Long.parseLong(options.getOrDefault("generations", "1000"));
+		long seed = Long.parseLong(options.getOrDefault("seed", Long.toString(System.nanoTime())));
+		double density = Double.parseDouble(options.getOrDefault("density", "0.15"));
+		LifeRule rule = options.containsKey("input") ? BoardIO.ruleFor(new File(options.get("input")), options.get("rule"))
+				: LifeRule.parse(options.getOrDefault("rule", "B3/S23"));
+		if (!rule.isLifeLike()) throw new IllegalArgumentException("Sharded runs need a Life-like rule, not " + rule);
+		int statsEvery = Integer.parseInt(options.getOrDefault("stats-every", "1"));
+		long snapshotEvery = Long.parseLong(options.getOrDefault("snapshot-every", "0"));
+		File snapshots = options.containsKey("snapshots") ? new File(options.get("snapshots")) : null;
+		if (snapshots != null && !snapshots.isDirectory() && !snapshots.mkdirs())
+			throw new IOException("Cannot create snapshot directory " + snapshots);
+
+		// A saved board sets the size; a .bin file's comes from its header alone
+		String input = "";
+		if (options.containsKey("input")) {
+			File file = new File(options.get("input"));
+			int[] size;
+			if (file.getName().toLowerCase().endsWith(".bin")) size = BoardIO.readBinarySize(file);
+			else {
+				LifeGrid board = BoardIO.read(file);
+				size = new int[] {board.getWidth(), board.getHeight()};
+			}
+			width = size[0];
+			height = size[1];
+			input = file.getAbsolutePath();
+		}
+		if (count < 1 || count > height) throw new IllegalArgumentException("Need between 1 and " + height + " workers");
+
+		List<Process> processes = new ArrayList<Process>();
+		SocketChannel[] workers = new SocketChannel[count];
+		try (ServerSocketChannel server = ServerSocketChannel.open()) {
+			server.bind(new InetSocketAddress(Integer.parseInt(options.getOrDefault("port", "0"))));
+			int port = ((InetSocketAddress) server.getLocalAddress()).getPort();
+			if (spawn) {
+				for (int k = 0; k < count; k++) processes.add(spawnWorker(port, options.get("worker-heap"),
+						Math.max(1, Runtime.getRuntime().availableProcessors() / count)));
+			}
+			else System.err.printf("Waiting for %d workers: java ShardWorker --coordinator HOST:%d%n", count, port);
+
+			// Workers are given bands in the order they connect; each is told where the one below listens
+			String[] hosts = new String[count];
+			int[] haloPorts = new int[count];
+			for (int k = 0; k < count; k++) {
+				workers[k] = server.accept();
+				workers[k].setOption(StandardSocketOptions.TCP_NODELAY, true);
+				hosts[k] = ((InetSocketAddress) workers[k].getRemoteAddress()).getAddress().getHostAddress();
+				haloPorts[k] = ShardProtocol.receive(workers[k]).getInt();
+			}
+			for (int k = 0; k < count; k++) {
+				int from = (int) ((long) k * height / count), to = (int) ((long) (k + 1) * height / count);
+				int below = (k + 1) % count;
+				ByteBuffer assign = ShardProtocol.allocate(44 + ShardProtocol.stringBytes(rule.toString())
+						+ ShardProtocol.stringBytes(input) + ShardProtocol.stringBytes(hosts[below]));
+				assign.putInt(k).putInt(count).putInt(width).putInt(height).putInt(from).putInt(to - from)
+						.putLong(seed).putDouble(density);
+				ShardProtocol.putString(assign, rule.toString());
+				ShardProtocol.putString(assign, input);
+				ShardProtocol.putString(assign, hosts[below]);
+				assign.putInt(haloPorts[below]);
+				assign.flip();
+				ShardProtocol.send(workers[k], assign);
+			}
+		}
+
+		ShardCoordinator coordinator = new ShardCoordinator(workers, width, height);
+		try {
+			for (SocketChannel worker : workers) coordinator.population += ShardProtocol.receive(worker).getLong();
+			coordinator.run(generations, options.get("stats"), statsEvery, snapshots, snapshotEvery);
+		}
+		finally {
+			for (SocketChannel worker : workers) worker.close();
+			for (Process process : processes) {
+				if (!process.waitFor(10, TimeUnit.SECONDS)) process.destroyForcibly();
+			}
+		}
+	}
+
+	// Start a worker process with this JVM's options and class path
+	private static Process spawnWorker(int port, String heap, int threads) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+		command.addAll(ManagementFactory.getRuntimeMXBean().getInputArguments());
+		if (heap != null) command.add("-Xmx" + heap);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add("ShardWorker");
+		command.add("--coordinator");
+		command.add("127.0.0.1:" + port);
+		command.add("--threads");
+		command.add(Integer.toString(threads));
+		return new ProcessBuilder(command).inheritIO().start();
+	}
+
+	private void run(long generations, String statsFile, int statsEvery, File snapshots, long snapshotEvery)
+			throws IOException {
+		PrintWriter stats = statsFile != null
+				? new PrintWriter(new BufferedWriter(new FileWriter(statsFile)))
+				: new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+		stats.println("generation,population,births,deaths");
+		writeStats(stats);
+
+		// Step to each generation that needs statistics or a snapshot, then wait for every worker
+		long start = System.nanoTime();
+		while (generation < generations) {
+			long target = generations;
+			if (statsEvery > 0) target = Math.min(target, (generation / statsEvery + 1) * statsEvery);
+			if (snapshots != null && snapshotEvery > 0)
+				target = Math.min(target, (generation / snapshotEvery + 1) * snapshotEvery);
+			step((int) Math.min(target - generation, Integer.MAX_VALUE));
+			if (statsEvery > 0 && generation % statsEvery == 0) writeStats(stats);
+			if (snapshots != null && snapshotEvery > 0 && generation % snapshotEvery == 0) snapshot(snapshots);
+		}
+		double seconds = (System.nanoTime() - start) / 1e9;
+		if (snapshots != null && (snapshotEvery == 0 || generation % snapshotEvery != 0)) snapshot(snapshots);
+		stats.flush();
+		if (statsFile != null) stats.close();
+		for (SocketChannel worker : workers) {
+			ShardProtocol.send(worker, ShardProtocol.allocate(1).put(0, ShardProtocol.STOP));
+		}
+
+		System.err.printf("%d generations on %d workers in %.3f s (%.1f generations/sec)%n",
+				generation, workers.length, seconds, seconds > 0 ? generation / seconds : 0.0);
+	}
+
+	// Every worker steps n generations; their replies are the barrier
+	private void step(int n) throws IOException {
+		ByteBuffer command = ShardProtocol.allocate(5).put(ShardProtocol.STEP).putInt(n);
+		command.flip();
+		for (SocketChannel worker : workers) ShardProtocol.send(worker, command.duplicate());
+		population = births = deaths = 0;
+		for (SocketChannel worker : workers) {
+			ByteBuffer reply = ShardProtocol.receive(worker);
+			generation = reply.getLong();
+			population += reply.getLong();
+			births += reply.getLong();
+			deaths += reply.getLong();
+		}
+	}
+
+	// Stream every worker's rows, in order, after a .bin header
+	private void snapshot(File dir) throws IOException {
+		File file = new File(dir, "gen-" + generation + ".bin");
+		int wordsPerRow = (width + 63) >>> 6;
+		ByteBuffer buffer = ShardProtocol.allocate(1 << 20);
+		try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			ShardProtocol.write(out, BoardIO.binaryHeader(width, height));
+			for (int k = 0; k < workers.length; k++) {
+				int rows = (int) ((long) (k + 1) * height / workers.length - (long) k * height / workers.length);
+				ShardProtocol.send(workers[k], ShardProtocol.allocate(1).put(0, ShardProtocol.SNAPSHOT));
+				for (long left = 8L * wordsPerRow * rows; left > 0; left -= buffer.limit()) {
+					buffer.clear();
+					buffer.limit((int) Math.min(buffer.capacity(), left));
+					ShardProtocol.fill(workers[k], buffer);
+					buffer.flip();
+					ShardProtocol.write(out, buffer);
+				}
+			}
+		}
+	}
+
+	private void writeStats(PrintWriter stats) {
+		stats.println(generation + "," + population + "," + births + "," + deaths);
+	}
+
+	// "--name value" pairs, exiting on an option not listed above
+	private static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<String, String>();
+		for (int k = 0; k < args.length; k += 2) {
+			if (!args[k].startsWith("--") || k + 1 >= args.length)
+				throw new IllegalArgumentException("Expected --option value, got " + args[k]);
+			if (!OPTIONS.contains(args[k].substring(2))) {
+				System.err.println("Unknown option " + args[k]);
+				System.err.println("Usage: java ShardCoordinator [--workers N] [--width N] [--height N] [--generations N] ...");
+				System.exit(2);
+			}
+			options.put(args[k].substring(2), args[k + 1]);
+		}
+		return options;
+	}
+
+}
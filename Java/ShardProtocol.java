@@ -0,0 +1,83 @@
+/**
+ *
+ * Messages between ShardCoordinator and its ShardWorkers
+ * Each message is an int length followed by that many bytes, little-endian, with strings written
+ * as a length and UTF-8 bytes; snapshots are the one exception, streamed as raw grid words
+ *
+ * Worker to coordinator, on connecting:  HELLO    halo port
+ * Coordinator to worker:                 ASSIGN   index, workers, width, height, first row, rows,
+ *                                                 seed, density, rule, input file ("" for random),
+ *                                                 host and halo port of the worker below
+ * Worker, once its band is loaded:       READY    population
+ * Coordinator:  STEP n       worker steps n generations, then replies generation, population,
+ *                            births, deaths (of its last generation)
+ *               SNAPSHOT     worker sends its rows' words, rows * words per row longs
+ *               STOP         worker closes its connections and exits
+ *
+ **/
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+public final class ShardProtocol {
+
+	public static final byte STEP = 1, SNAPSHOT = 2, STOP = 3;
+
+	private ShardProtocol() {}
+
+	public static ByteBuffer allocate(int bytes) {
+		return ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	// Write the buffer's remaining bytes as one message, in a single write so that no packet waits
+	// on the acknowledgement of another
+	public static void send(WritableByteChannel channel, ByteBuffer message) throws IOException {
+		ByteBuffer framed = allocate(4 + message.remaining()).putInt(message.remaining()).put(message);
+		framed.flip();
+		write(channel, framed);
+	}
+
+	// Read one message, ready to get from
+	public static ByteBuffer receive(ReadableByteChannel channel) throws IOException {
+		ByteBuffer length = allocate(4);
+		fill(channel, length);
+		int bytes = length.getInt(0);
+		if (bytes < 0 || bytes > 1 << 20) throw new IOException("Bad message length " + bytes);
+		ByteBuffer message = allocate(bytes);
+		fill(channel, message);
+		message.flip();
+		return message;
+	}
+
+	public static void write(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) channel.write(buffer);
+	}
+
+	// Read until the buffer is full
+	public static void fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) < 0) throw new EOFException("Connection closed");
+		}
+	}
+
+	public static int stringBytes(String s) {
+		return 4 + s.getBytes(StandardCharsets.UTF_8).length;
+	}
+
+	public static void putString(ByteBuffer buffer, String s) {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(bytes.length).put(bytes);
+	}
+
+	public static String getString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,275 @@
+/**
+ *
+ * One process of a sharded Life run (see ShardCoordinator): holds a band of rows of the torus,
+ * with a halo row above and below it, and steps it when the coordinator says
+ * Each generation it swaps its edge rows with the workers holding the bands above and below, over
+ * one socket to each, without blocking so that neither side can stall the other however long the
+ * rows; meanwhile it steps the rows that don't need the halo
+ *
+ * Usage: java ShardWorker --coordinator HOST:PORT [--threads N]
+ *   --threads N    threads stepping the band (default: one per processor)
+ *
+ **/
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class ShardWorker {
+
+	private final SocketChannel control;
+	private final ParallelStepper stepper;
+
+	// The band: rows 1 to rows of each grid are the worker's, rows 0 and rows + 1 the halo
+	private LifeRule rule;
+	private LifeGrid grid, next;
+	private int rows, wordsPerRow;
+	private long generation, population, births, deaths;
+	private final AtomicLong bandBirths = new AtomicLong(), bandDeaths = new AtomicLong();
+
+	// Links to the workers above and below (null when this is the only worker), and the rows
+	// going out and coming in on each
+	private SocketChannel up, down;
+	private Selector selector;
+	private SelectionKey upKey, downKey;
+	private ByteBuffer sendUp, sendDown, receiveUp, receiveDown;
+	private final ExecutorService exchanger = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "halo exchange");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private ShardWorker(SocketChannel control, int threads) {
+		this.control = control;
+		this.stepper = new ParallelStepper(new ForkJoinPool(threads), 16);
+	}
+
+	public static void main(String[] args) throws IOException {
+		String coordinator = null;
+		int threads = Runtime.getRuntime().availableProcessors();
+		for (int k = 0; k + 1 < args.length; k += 2) {
+			if (args[k].equals("--coordinator")) coordinator = args[k + 1];
+			else if (args[k].equals("--threads")) threads = Integer.parseInt(args[k + 1]);
+			else throw new IllegalArgumentException("Unknown option " + args[k]);
+		}
+		if (coordinator == null || coordinator.lastIndexOf(':') < 0) {
+			System.err.println("Usage: java ShardWorker --coordinator HOST:PORT [--threads N]");
+			System.exit(2);
+		}
+		int colon = coordinator.lastIndexOf(':');
+		SocketChannel control = SocketChannel.open(new InetSocketAddress(coordinator.substring(0, colon),
+				Integer.parseInt(coordinator.substring(colon + 1))));
+		control.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		ShardWorker worker = new ShardWorker(control, threads);
+		try {
+			worker.join();
+			worker.serve();
+		}
+		finally {
+			worker.close();
+		}
+	}
+
+	// Say hello, take the band assigned, connect to the neighbouring workers and load the band
+	private void join() throws IOException {
+		InetAddress local = ((InetSocketAddress) control.getLocalAddress()).getAddress();
+		try (ServerSocketChannel halo = ServerSocketChannel.open()) {
+			halo.bind(new InetSocketAddress(local, 0));
+			ShardProtocol.send(control, ShardProtocol.allocate(4).putInt(0, ((InetSocketAddress) halo.getLocalAddress()).getPort()));
+
+			ByteBuffer assign = ShardProtocol.receive(control);
+			int index = assign.getInt(), workers = assign.getInt(), width = assign.getInt(), height = assign.getInt();
+			int from = assign.getInt();
+			rows = assign.getInt();
+			long seed = assign.getLong();
+			double density = assign.getDouble();
+			rule = LifeRule.parse(ShardProtocol.getString(assign));
+			String input = ShardProtocol.getString(assign);
+			String belowHost = ShardProtocol.getString(assign);
+			int belowPort = assign.getInt();
+
+			grid = new LifeGrid(width, rows + 2);
+			next = new LifeGrid(width, rows + 2);
+			wordsPerRow = grid.getWordsPerRow();
+			if (workers > 1) {
+				// Every worker is listening before any is told where to connect, so this can't wait
+				// on a worker that hasn't started; the accept then waits for the worker above
+				down = SocketChannel.open(new InetSocketAddress(belowHost, belowPort));
+				up = halo.accept();
+				selector = Selector.open();
+				upKey = register(up);
+				downKey = register(down);
+				sendUp = rowBuffer();
+				sendDown = rowBuffer();
+				receiveUp = rowBuffer();
+				receiveDown = rowBuffer();
+			}
+			System.err.printf("Worker %d of %d: rows %d to %d%n", index, workers, from, from + rows - 1);
+
+			if (input.isEmpty()) fillRandom(seed, density, from, width);
+			else if (input.toLowerCase().endsWith(".bin")) BoardIO.readBinaryRows(new File(input), from, rows, grid, 1);
+			else System.arraycopy(BoardIO.read(new File(input)).getWords(), from * wordsPerRow, grid.getWords(),
+					wordsPerRow, rows * wordsPerRow);
+		}
+		population = 0;
+		long[] words = grid.getWords();
+		for (int w = wordsPerRow; w < (rows + 1) * wordsPerRow; w++) population += Long.bitCount(words[w]);
+		ShardProtocol.send(control, ShardProtocol.allocate(8).putLong(0, population));
+	}
+
+	private SelectionKey register(SocketChannel channel) throws IOException {
+		channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+		channel.configureBlocking(false);
+		return channel.register(selector, 0);
+	}
+
+	private ByteBuffer rowBuffer() {
+		return ByteBuffer.allocateDirect(8 * wordsPerRow).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	// Cell (x, y) of the board is alive with probability density, drawn from CellRandom by its
+	// position, so the board is the same however many workers share it
+	private void fillRandom(long seed, double density, int from, int width) {
+		long key = CellRandom.key(seed, 0);
+		long[] words = grid.getWords();
+		stepper.step(rows, (first, last) -> {
+			for (int r = first; r < last; r++) {
+				long cell = (long) (from + r) * width;
+				for (int x = 0; x < width; x++) {
+					if (CellRandom.nextFloat(key, cell + x) < density) words[(r + 1) * wordsPerRow + (x >>> 6)] |= 1L << x;
+				}
+			}
+		});
+	}
+
+	// Carry out the coordinator's commands until it says stop
+	private void serve() throws IOException {
+		while (true) {
+			ByteBuffer command = ShardProtocol.receive(control);
+			byte type = command.get();
+			if (type == ShardProtocol.STEP) {
+				int generations = command.getInt();
+				for (int k = 0; k < generations; k++) step();
+				ByteBuffer reply = ShardProtocol.allocate(32).putLong(generation).putLong(population)
+						.putLong(births).putLong(deaths);
+				reply.flip();
+				ShardProtocol.send(control, reply);
+			}
+			else if (type == ShardProtocol.SNAPSHOT) {
+				long[] words = grid.getWords();
+				ByteBuffer out = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+				int chunk = out.capacity() / 8;
+				for (int w = wordsPerRow, end = (rows + 1) * wordsPerRow; w < end; w += chunk) {
+					int count = Math.min(chunk, end - w);
+					out.clear();
+					out.asLongBuffer().put(words, w, count);
+					out.limit(8 * count);
+					ShardProtocol.write(control, out);
+				}
+			}
+			else if (type == ShardProtocol.STOP) return;
+			else throw new IOException("Unknown command " + type);
+		}
+	}
+
+	/**
+	 *  One generation: the halo swap runs on its own thread while rows 2 to rows - 1, which only
+	 *  read the band's own rows, are stepped; the first and last rows follow once the halo is in.
+	 */
+	private void step() throws IOException {
+		Future<Void> exchange = exchanger.submit(() -> {
+			exchange();
+			return null;
+		});
+		bandBirths.set(0);
+		bandDeaths.set(0);
+		if (rows > 2) stepper.step(rows - 2, (from, to) -> stepRows(from + 2, to + 2));
+		try {
+			exchange.get();
+		}
+		catch (InterruptedException e) {
+			throw new IOException("Interrupted waiting for the halo", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+			throw new IOException("Halo exchange failed", e.getCause());
+		}
+		stepRows(1, 2);
+		if (rows > 1) stepRows(rows, rows + 1);
+		births = bandBirths.get();
+		deaths = bandDeaths.get();
+		population += births - deaths;
+		LifeGrid temp = grid;
+		grid = next;
+		next = temp;
+		generation++;
+	}
+
+	private void stepRows(int from, int to) {
+		long[] tally = new long[2];
+		grid.stepRows(next, rule, from, to, tally);
+		bandBirths.addAndGet(tally[0]);
+		bandDeaths.addAndGet(tally[1]);
+	}
+
+	// Send the first row up and the last row down, and fill the halo rows with what comes back
+	private void exchange() throws IOException {
+		long[] words = grid.getWords();
+		if (up == null) {
+			System.arraycopy(words, rows * wordsPerRow, words, 0, wordsPerRow);
+			System.arraycopy(words, wordsPerRow, words, (rows + 1) * wordsPerRow, wordsPerRow);
+			return;
+		}
+		sendUp.clear();
+		sendUp.asLongBuffer().put(words, wordsPerRow, wordsPerRow);
+		sendDown.clear();
+		sendDown.asLongBuffer().put(words, rows * wordsPerRow, wordsPerRow);
+		receiveUp.clear();
+		receiveDown.clear();
+		while (sendUp.hasRemaining() || sendDown.hasRemaining() || receiveUp.hasRemaining() || receiveDown.hasRemaining()) {
+			transfer(up, sendUp, receiveUp);
+			transfer(down, sendDown, receiveDown);
+			upKey.interestOps((sendUp.hasRemaining() ? SelectionKey.OP_WRITE : 0)
+					| (receiveUp.hasRemaining() ? SelectionKey.OP_READ : 0));
+			downKey.interestOps((sendDown.hasRemaining() ? SelectionKey.OP_WRITE : 0)
+					| (receiveDown.hasRemaining() ? SelectionKey.OP_READ : 0));
+			if (upKey.interestOps() == 0 && downKey.interestOps() == 0) break;
+			selector.select();
+			selector.selectedKeys().clear();
+		}
+		receiveUp.flip();
+		receiveUp.asLongBuffer().get(words, 0, wordsPerRow);
+		receiveDown.flip();
+		receiveDown.asLongBuffer().get(words, (rows + 1) * wordsPerRow, wordsPerRow);
+	}
+
+	// Write and read whatever the channel takes without blocking
+	private static void transfer(SocketChannel channel, ByteBuffer out, ByteBuffer in) throws IOException {
+		if (out.hasRemaining()) channel.write(out);
+		if (in.hasRemaining() && channel.read(in) < 0) throw new EOFException("A neighbouring worker closed its connection");
+	}
+
+	private void close() throws IOException {
+		exchanger.shutdownNow();
+		if (selector != null) selector.close();
+		if (up != null) up.close();
+		if (down != null) down.close();
+		control.close();
+	}
+
+}
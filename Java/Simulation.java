@@ -0,0 +1,26 @@
+/**
+ *
+ * A cellular automaton that can be stepped without a window
+ * The Processing sketches draw a Simulation's state; Headless runs one from the command line
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+
+public interface Simulation {
+
+	// Advance one generation
+	void step();
+
+	long getGeneration();
+
+	// Names and current values of the statistics reported for each generation (e.g. population)
+	String[] getStatNames();
+
+	long[] getStats();
+
+	// Write the current board to file
+	void saveSnapshot(File file) throws IOException;
+
+}
@@ -0,0 +1,141 @@
+/**
+ *
+ * Live metrics of one running simulation: its statistics (population, births, deaths, ...) after
+ * every step, step latency, generations per second, and render time per frame
+ * The statistics are the ones the step kernels keep as they go, so recording them costs no pass
+ * over the board. Readable through JMX (register) or as Prometheus text (MetricsServer)
+ *
+ **/
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public final class SimulationMetrics implements SimulationMetricsMBean {
+
+	private final String name;
+	private final LatencyHistogram steps = new LatencyHistogram(), frames = new LatencyHistogram();
+
+	private volatile String[] statNames = new String[0];
+	private volatile long[] stats = new long[0];
+	private volatile long generation;
+
+	// Generations per second, measured over windows of at least a second
+	private volatile double rate;
+	private long windowStart = System.nanoTime(), windowGeneration;
+
+	public SimulationMetrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	// After a step that took nanos; call from the thread that steps
+	public void recordStep(Simulation sim, long nanos) {
+		steps.record(nanos);
+		recordStats(sim);
+		long now = System.nanoTime();
+		if (now - windowStart >= 1_000_000_000L) {
+			rate = (generation - windowGeneration) * 1e9 / (now - windowStart);
+			windowStart = now;
+			windowGeneration = generation;
+		}
+	}
+
+	// After an edit, or any other change that wasn't a step
+	public void recordStats(Simulation sim) {
+		if (statNames.length == 0) statNames = sim.getStatNames();
+		stats = sim.getStats();
+		generation = sim.getGeneration();
+	}
+
+	public void recordFrame(long nanos) {
+		frames.record(nanos);
+	}
+
+	// Make these metrics visible over JMX as CellularAutomata:type=Simulation,name=<name>
+	public void register() {
+		try {
+			ObjectName objectName = new ObjectName("CellularAutomata:type=Simulation,name=" + ObjectName.quote(name));
+			if (!ManagementFactory.getPlatformMBeanServer().isRegistered(objectName))
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+		}
+		catch (JMException e) { e.printStackTrace(); }
+	}
+
+	public long getGeneration() {
+		return generation;
+	}
+
+	public double getGenerationsPerSecond() {
+		return rate;
+	}
+
+	public String[] getStatNames() {
+		return statNames.clone();
+	}
+
+	public long[] getStats() {
+		return stats.clone();
+	}
+
+	public long getStepCount() {
+		return steps.getCount();
+	}
+
+	public double getMeanStepMillis() {
+		return steps.getMeanMillis();
+	}
+
+	public double getStepMillis99() {
+		return steps.getQuantileMillis(0.99);
+	}
+
+	public long getFrameCount() {
+		return frames.getCount();
+	}
+
+	public double getMeanFrameMillis() {
+		return frames.getMeanMillis();
+	}
+
+	public double getFrameMillis99() {
+		return frames.getQuantileMillis(0.99);
+	}
+
+	// Append every metric in the Prometheus text format, labelled sim="<name>"
+	public void writePrometheus(StringBuilder out) {
+		String labels = "sim=\"" + name.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+		gauge(out, "ca_generation", "Current generation", labels, Long.toString(generation));
+		gauge(out, "ca_generations_per_second", "Generations stepped per second over the last second", labels,
+				String.format(Locale.ROOT, "%.3f", rate));
+		String[] names = statNames;
+		long[] values = stats;
+		for (int k = 0; k < names.length && k < values.length; k++) {
+			gauge(out, "ca_" + snakeCase(names[k]), "Simulation statistic " + names[k] + " after the last step",
+					labels, Long.toString(values[k]));
+		}
+		out.append("# HELP ca_step_seconds Time taken by each step\n# TYPE ca_step_seconds histogram\n");
+		steps.writePrometheus(out, "ca_step_seconds", labels);
+		if (frames.getCount() > 0) {
+			out.append("# HELP ca_frame_seconds Time taken to render each frame\n# TYPE ca_frame_seconds histogram\n");
+			frames.writePrometheus(out, "ca_frame_seconds", labels);
+		}
+	}
+
+	private static void gauge(StringBuilder out, String metric, String help, String labels, String value) {
+		out.append("# HELP ").append(metric).append(' ').append(help).append('\n');
+		out.append("# TYPE ").append(metric).append(" gauge\n");
+		out.append(metric).append('{').append(labels).append("} ").append(value).append('\n');
+	}
+
+	// predatorBirths -> predator_births
+	private static String snakeCase(String name) {
+		return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+	}
+
+}
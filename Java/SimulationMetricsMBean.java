@@ -0,0 +1,33 @@
+/**
+ *
+ * JMX view of a running simulation (see SimulationMetrics), e.g. in JConsole or VisualVM under
+ * CellularAutomata / Simulation
+ *
+ **/
+
+public interface SimulationMetricsMBean {
+
+	long getGeneration();
+
+	// Over roughly the last second
+	double getGenerationsPerSecond();
+
+	// Simulation.getStatNames() and the values after the last step or edit
+	String[] getStatNames();
+
+	long[] getStats();
+
+	long getStepCount();
+
+	double getMeanStepMillis();
+
+	// 99th percentile, to the next power of two microseconds
+	double getStepMillis99();
+
+	long getFrameCount();
+
+	double getMeanFrameMillis();
+
+	double getFrameMillis99();
+
+}
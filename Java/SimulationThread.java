@@ -0,0 +1,118 @@
+/**
+ *
+ * Steps a simulation on its own thread, at its own rate, and publishes each completed generation
+ * to the renderer through a TripleBuffer. Rendering never waits for a step and a slow frame
+ * never holds up the simulation
+ * Edits from the UI thread run through edit(), between two steps, and are published straight away
+ * Each step is timed and its statistics recorded in getMetrics()
+ *
+ **/
+
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+public final class SimulationThread<T> {
+
+	private final Simulation sim;
+	private final TripleBuffer<T> buffer;
+
+	// Copies the simulation's current state into a buffer slot
+	private final Consumer<T> snapshot;
+
+	// Held while stepping or editing, never by the renderer
+	private final Object lock = new Object();
+	private final Thread thread;
+	private final SimulationMetrics metrics;
+
+	private volatile boolean paused;
+	private volatile double stepsPerSecond;
+
+	// stepsPerSecond <= 0 steps as fast as possible
+	public SimulationThread(Simulation sim, TripleBuffer<T> buffer, Consumer<T> snapshot, double stepsPerSecond) {
+		this(sim, buffer, snapshot, stepsPerSecond, new SimulationMetrics("simulation"));
+	}
+
+	public SimulationThread(Simulation sim, TripleBuffer<T> buffer, Consumer<T> snapshot, double stepsPerSecond,
+			SimulationMetrics metrics) {
+		this.sim = sim;
+		this.metrics = metrics;
+		this.buffer = buffer;
+		this.snapshot = snapshot;
+		this.stepsPerSecond = stepsPerSecond;
+		thread = new Thread(this::run, "simulation");
+		thread.setDaemon(true);
+	}
+
+	public void start() {
+		synchronized (lock) {
+			metrics.recordStats(sim);
+			publish();
+		}
+		thread.start();
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	public void setPaused(boolean paused) {
+		this.paused = paused;
+		if (!paused) LockSupport.unpark(thread);
+	}
+
+	public void setStepsPerSecond(double stepsPerSecond) {
+		this.stepsPerSecond = stepsPerSecond;
+		LockSupport.unpark(thread);
+	}
+
+	// Run an edit of the simulation's state between two steps, then publish the result
+	public void edit(Runnable edit) {
+		synchronized (lock) {
+			edit.run();
+			metrics.recordStats(sim);
+			publish();
+		}
+	}
+
+	public SimulationMetrics getMetrics() {
+		return metrics;
+	}
+
+	// Latest published generation; never blocks
+	public T latest() {
+		buffer.acquire();
+		return buffer.getFront();
+	}
+
+	private void run() {
+		long next = System.nanoTime();
+		while (true) {
+			if (paused) {
+				LockSupport.park(this);
+				next = System.nanoTime();
+				continue;
+			}
+			synchronized (lock) {
+				long start = System.nanoTime();
+				sim.step();
+				metrics.recordStep(sim, System.nanoTime() - start);
+				publish();
+			}
+
+			// Keep to the requested rate without trying to catch up after a slow step
+			double rate = stepsPerSecond;
+			if (rate > 0) {
+				next += (long) (1e9 / rate);
+				long wait = next - System.nanoTime();
+				if (wait > 0) LockSupport.parkNanos(this, wait);
+				else next = System.nanoTime();
+			}
+		}
+	}
+
+	private void publish() {
+		snapshot.accept(buffer.getBack());
+		buffer.publish();
+	}
+
+}
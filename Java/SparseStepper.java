@@ -0,0 +1,145 @@
+/**
+ *
+ * Steps only the parts of a LifeGrid that can change
+ * The board is split into tiles one word (64 cells) wide and TILE_ROWS rows tall. A tile can only
+ * change if it or one of its eight neighboring tiles (wrapping around the torus seams) changed in
+ * the previous generation, so each step recomputes just those tiles and the rest cost nothing.
+ *
+ * Tiles that are skipped are left untouched in the destination grid. This relies on the grids
+ * being used as a swapped pair: the destination holds the generation before the source, and a
+ * tile with no changes around it is the same in both. Any edit to the source outside of step()
+ * breaks that, so it must be followed by invalidate().
+ *
+ **/
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class SparseStepper {
+
+	public static final int TILE_ROWS = 8;
+
+	private final int width, height, tilesX, tilesY;
+	private final ParallelStepper stepper;
+
+	// Tiles that changed in the last step, and the tiles to recompute in the next
+	private int[] changed, active;
+	private int changedCount, activeCount;
+
+	// Step stamp per tile, used to collect each active tile once; and per active slot, whether it changed
+	private final int[] mark;
+	private final boolean[] activeChanged;
+	private int stamp;
+
+	// Whether the next step has to recompute every tile
+	private boolean full = true;
+	private boolean lastFull;
+
+	// Cells born and cells that died in the last step, summed from each band
+	private final AtomicLong births = new AtomicLong(), deaths = new AtomicLong();
+
+	public SparseStepper(int width, int height, ParallelStepper stepper) {
+		this.width = width;
+		this.height = height;
+		this.tilesX = (width + 63) >>> 6;
+		this.tilesY = (height + TILE_ROWS - 1) / TILE_ROWS;
+		this.stepper = stepper;
+		int tiles = tilesX * tilesY;
+		changed = new int[tiles];
+		active = new int[tiles];
+		mark = new int[tiles];
+		activeChanged = new boolean[tiles];
+	}
+
+	// Recompute the whole board on the next step (call after editing the source grid)
+	public void invalidate() {
+		full = true;
+	}
+
+	// Whether the last step recomputed the whole board
+	public boolean wasFullStep() {
+		return lastFull;
+	}
+
+	public int getTilesX() {
+		return tilesX;
+	}
+
+	public long getBirths() {
+		return births.get();
+	}
+
+	public long getDeaths() {
+		return deaths.get();
+	}
+
+	// Number of tiles that changed in the last step
+	public int getChangedCount() {
+		return changedCount;
+	}
+
+	// Index (tileY * tilesX + tileX) of the k-th tile that changed in the last step
+	public int getChangedTile(int k) {
+		return changed[k];
+	}
+
+	// Advance src one generation into dst, returning the number of tiles recomputed
+	public int step(LifeGrid src, LifeGrid dst, LifeRule rule) {
+		if (src.getWidth() != width || src.getHeight() != height || dst == src)
+			throw new IllegalArgumentException("Grids must be a distinct pair matching the stepper");
+		collectActive();
+		births.set(0);
+		deaths.set(0);
+		LifeGrid from = src, to = dst;
+		stepper.step(activeCount, (lo, hi) -> {
+			long[] tally = new long[2];
+			for (int k = lo; k < hi; k++) {
+				int tile = active[k], ty = tile / tilesX;
+				activeChanged[k] = from.stepTile(to, rule, tile - ty * tilesX, ty * TILE_ROWS,
+						Math.min(height, (ty + 1) * TILE_ROWS), tally);
+			}
+			births.addAndGet(tally[0]);
+			deaths.addAndGet(tally[1]);
+		});
+
+		changedCount = 0;
+		for (int k = 0; k < activeCount; k++) {
+			if (activeChanged[k]) changed[changedCount++] = active[k];
+		}
+		lastFull = full;
+		full = false;
+		return activeCount;
+	}
+
+	// Gather every tile within one tile of a changed tile, wrapping at the edges of the torus
+	private void collectActive() {
+		activeCount = 0;
+		if (full) {
+			for (int tile = 0; tile < active.length; tile++) active[activeCount++] = tile;
+			return;
+		}
+		if (++stamp == 0) {
+			Arrays.fill(mark, 0);
+			stamp = 1;
+		}
+		for (int k = 0; k < changedCount; k++) {
+			int tile = changed[k], ty = tile / tilesX, tx = tile - ty * tilesX;
+			for (int dy = -1; dy <= 1; dy++) {
+				int ny = ty + dy;
+				if (ny < 0) ny = tilesY - 1;
+				else if (ny == tilesY) ny = 0;
+				for (int dx = -1; dx <= 1; dx++) {
+					int nx = tx + dx;
+					if (nx < 0) nx = tilesX - 1;
+					else if (nx == tilesX) nx = 0;
+					int neighbor = ny * tilesX + nx;
+					if (mark[neighbor] != stamp) {
+						mark[neighbor] = stamp;
+						active[activeCount++] = neighbor;
+					}
+				}
+			}
+		}
+	}
+
+}
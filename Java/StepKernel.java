@@ -0,0 +1,30 @@
+/**
+ *
+ * Inner loops shared by the Life and PredPrey boards, so they can be swapped for a vectorised
+ * version (see Kernels for how one is chosen)
+ *
+ **/
+
+public interface StepKernel {
+
+	/**
+	 *  Step words [from, to) of one bit-packed row (see LifeGrid) from src into dst, where
+	 *  above, row and below are the offsets of the three rows. Only interior words are passed
+	 *  (from >= 1, to < words per row), so every word has both neighbors in the same row.
+	 *  Adds the number of cells born to tally[0] and the number that died to tally[1], and
+	 *  returns the OR of every changed bit.
+	 */
+	long lifeWords(long[] src, long[] dst, int above, int row, int below, int from, int to,
+			boolean conway, int birth, int survive, long[] tally);
+
+	/**
+	 *  Neighbourhood of cells [from, to) of one column of packed PredPrey cells (see
+	 *  PredPreyBoard), where left, center and right are the offsets of the three columns.
+	 *  counts[j] gets the prey count plus 16 times the predator count (at most 136, so read it
+	 *  unsigned) and incoming[j] is 1 if a neighboring predator is moving into the cell, else 0.
+	 *  Column ends wrap around the torus.
+	 */
+	void neighbours(byte[] cells, int left, int center, int right, int height,
+			byte[] counts, byte[] incoming, int from, int to);
+
+}
@@ -0,0 +1,205 @@
+/**
+ *
+ * Steps a Life torus several generations per pass over memory (temporal blocking)
+ * The board is cut into bands of rows small enough for a pair of them to stay in the L2 cache.
+ * Each band is copied, with depth rows either side of it, into a scratch pair and stepped depth
+ * generations there: the rows it can still step correctly shrink by one at each edge every
+ * generation, so after depth generations just the band's own rows are right, and only those are
+ * written back. The board then streams through memory once every depth generations rather than
+ * once a generation, at the cost of stepping the halo rows more than once
+ *
+ **/
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class TemporalStepper {
+
+	// Bands larger than any board, so a band's generations are stepped on the thread stepping the band
+	private static final ParallelStepper SERIAL = new ParallelStepper(Integer.MAX_VALUE);
+
+	// Assumed L2 size where the system doesn't say
+	private static final long DEFAULT_CACHE = 1L << 20;
+
+	// Deepest halo tuned for; beyond this the redundant rows cost more than the memory traffic saved
+	private static final int MAX_DEPTH = 16;
+
+	private final int width, height, depth, band;
+	private final ThreadLocal<LifeGrid[]> scratch;
+	private final AtomicLong bandBirths = new AtomicLong(), bandDeaths = new AtomicLong(), bandPopulation = new AtomicLong();
+
+	public TemporalStepper(int width, int height, int depth, int band) {
+		if (depth < 1) throw new IllegalArgumentException("Depth must be at least 1");
+		this.width = width;
+		this.height = height;
+		this.depth = depth;
+		this.band = Math.min(Math.max(band, depth), height);
+		int rows = this.band + 2 * depth;
+		scratch = ThreadLocal.withInitial(() -> new LifeGrid[] {new LifeGrid(width, rows), new LifeGrid(width, rows)});
+	}
+
+	/**
+	 *  Tuned to this machine's L2 cache: the scratch pair takes half of it, and unless given (depth
+	 *  above 0) the depth is a sixteenth of the rows that fit, so the halo adds about a fourteenth
+	 *  to the rows stepped. A tuned depth of 1 means blocking wouldn't help: the whole board already
+	 *  fits in the cache, or rows are so wide that too few fit for any halo to pay off.
+	 */
+	public static TemporalStepper tuned(int width, int height, int depth) {
+		long rowBytes = 8L * ((width + 63) >>> 6), cache = cacheBytes();
+		int rows = (int) Math.min(Integer.MAX_VALUE, cache / 4 / rowBytes);
+		if (depth > 0) return new TemporalStepper(width, height, depth, rows - 2 * depth);
+		depth = Math.min(MAX_DEPTH, rows / 16);
+		if (2 * rowBytes * height <= cache) return new TemporalStepper(width, height, 1, height);
+		if (depth < 2) return new TemporalStepper(width, height, 1, Math.max(1, rows - 2));
+		return new TemporalStepper(width, height, depth, rows - 2 * depth);
+	}
+
+	// Size of a data (or unified) level 2 cache, as Linux reports it; DEFAULT_CACHE elsewhere
+	public static long cacheBytes() {
+		File[] levels = new File("/sys/devices/system/cpu/cpu0/cache").listFiles((dir, name) -> name.startsWith("index"));
+		if (levels == null) return DEFAULT_CACHE;
+		for (File level : levels) {
+			try {
+				if (!read(level, "level").equals("2") || read(level, "type").equals("Instruction")) continue;
+				String size = read(level, "size");
+				long scale = size.endsWith("K") ? 1L << 10 : size.endsWith("M") ? 1L << 20 : 1;
+				if (scale > 1) size = size.substring(0, size.length() - 1);
+				return Long.parseLong(size) * scale;
+			}
+			catch (IOException | NumberFormatException e) {
+				// Unreadable; try the next level
+			}
+		}
+		return DEFAULT_CACHE;
+	}
+
+	private static String read(File dir, String name) throws IOException {
+		return new String(Files.readAllBytes(new File(dir, name).toPath())).trim();
+	}
+
+	// Generations stepped per pass
+	public int getDepth() {
+		return depth;
+	}
+
+	// Rows written back per band
+	public int getBand() {
+		return band;
+	}
+
+	/**
+	 *  Step src generations (at most getDepth()) generations into dst, a band at a time on the
+	 *  stepper, which should split into single bands. tally gets the births and deaths of the
+	 *  last generation only, as the intermediate ones are never all in memory at once, so the
+	 *  population of dst is returned, counted from each band's rows as they are written back.
+	 */
+	public long step(LifeGrid src, LifeGrid dst, LifeRule rule, int generations, ParallelStepper stepper, long[] tally) {
+		if (generations < 1 || generations > depth) throw new IllegalArgumentException("Can step 1 to " + depth + " generations");
+		if (src.getWidth() != width || src.getHeight() != height) throw new IllegalArgumentException("Grid is not " + width + "x" + height);
+		bandBirths.set(0);
+		bandDeaths.set(0);
+		bandPopulation.set(0);
+		stepper.step((height + band - 1) / band, (from, to) -> {
+			long[] bandTally = new long[2];
+			long live = 0;
+			for (int b = from; b < to; b++) live += stepBand(src, dst, rule, generations, b * band, Math.min(height, (b + 1) * band), bandTally);
+			bandBirths.addAndGet(bandTally[0]);
+			bandDeaths.addAndGet(bandTally[1]);
+			bandPopulation.addAndGet(live);
+		});
+		tally[0] += bandBirths.get();
+		tally[1] += bandDeaths.get();
+		return bandPopulation.get();
+	}
+
+	// Rows [y0, y1) of dst, generations on from src; returns their live cells
+	private long stepBand(LifeGrid src, LifeGrid dst, LifeRule rule, int generations, int y0, int y1, long[] tally) {
+		LifeGrid[] pair = scratch.get();
+		int wordsPerRow = src.getWordsPerRow(), rows = y1 - y0 + 2 * generations;
+
+		// The band and its halo, wrapping round the torus (more than once, on a board shorter than the halo)
+		long[] from = src.getWords(), words = pair[0].getWords();
+		for (int r = 0; r < rows; r++) {
+			int y = Math.floorMod(y0 - generations + r, height);
+			System.arraycopy(from, y * wordsPerRow, words, r * wordsPerRow, wordsPerRow);
+		}
+		LifeGrid result = stepScratch(pair, rule, generations, rows, SERIAL, tally);
+		System.arraycopy(result.getWords(), generations * wordsPerRow, dst.getWords(), y0 * wordsPerRow, (y1 - y0) * wordsPerRow);
+		return population(result.getWords(), generations * wordsPerRow, (y1 - y0) * wordsPerRow);
+	}
+
+	/**
+	 *  Step an off-heap board generations (at most getDepth()) generations where it lies, band after
+	 *  band from the top, each band's rows stepped in parallel on the stepper. A band's halo above
+	 *  has already been overwritten by the band before it, and the last band's halo below by the
+	 *  first, so the rows they need are kept from when those bands were read: the board is never
+	 *  copied whole, on the heap or off it. Returns the board's population after, counted as the
+	 *  bands are written back.
+	 */
+	public long stepInPlace(OffHeapGrid board, LifeRule rule, int generations, ParallelStepper stepper, long[] tally) {
+		if (generations < 1 || generations > depth) throw new IllegalArgumentException("Can step 1 to " + depth + " generations");
+		if (board.getWidth() != width || board.getHeight() != height) throw new IllegalArgumentException("Board is not " + width + "x" + height);
+		LifeGrid[] pair = scratch.get();
+		int wordsPerRow = board.getWordsPerRow(), k = generations;
+
+		// The first k rows, and the last k of the band before, as they were before being stepped
+		long[] head = new long[k * wordsPerRow], carry = new long[k * wordsPerRow];
+		long live = 0;
+		for (int y0 = 0; y0 < height; y0 += band) {
+			int y1 = Math.min(height, y0 + band), rows = y1 - y0 + 2 * k;
+			long[] words = pair[0].getWords();
+			for (int r = 0; r < rows; r++) {
+				int y = y0 - k + r, at = r * wordsPerRow;
+				if (y0 == 0) board.readRows(Math.floorMod(y, height), 1, words, at);
+				else if (y < y0) System.arraycopy(carry, (y - y0 + k) * wordsPerRow, words, at, wordsPerRow);
+				else if (y < height) board.readRows(y, 1, words, at);
+				else System.arraycopy(head, (y - height) * wordsPerRow, words, at, wordsPerRow);
+			}
+
+			// Bands are at least k rows, so these are all the band's own rows
+			if (y0 == 0) System.arraycopy(words, k * wordsPerRow, head, 0, head.length);
+			System.arraycopy(words, (y1 - y0) * wordsPerRow, carry, 0, carry.length);
+			LifeGrid result = stepScratch(pair, rule, k, rows, stepper, tally);
+			board.writeRows(y0, y1 - y0, result.getWords(), k * wordsPerRow);
+			live += population(result.getWords(), k * wordsPerRow, (y1 - y0) * wordsPerRow);
+		}
+		return live;
+	}
+
+	// Live cells in words [at, at + count), while they're still in the cache
+	private static long population(long[] words, int at, int count) {
+		long live = 0;
+		for (int k = at; k < at + count; k++) live += Long.bitCount(words[k]);
+		return live;
+	}
+
+	// Step the band and halo loaded into pair[0] generations on, splitting each generation's rows on
+	// the stepper, and return the scratch grid the band's rows (from row generations) ended up in.
+	// Generation t is right on rows [t, rows - t); only the last is tallied, on the band's own rows
+	private static LifeGrid stepScratch(LifeGrid[] pair, LifeRule rule, int generations, int rows, ParallelStepper stepper,
+			long[] tally) {
+		LifeGrid a = pair[0], b = pair[1];
+		AtomicLong born = new AtomicLong(), died = new AtomicLong();
+		for (int t = 1; t <= generations; t++) {
+			LifeGrid src = a, dst = b;
+			int first = t;
+			boolean last = t == generations;
+			stepper.step(rows - 2 * t, (from, to) -> {
+				long[] counts = new long[2];
+				src.stepRows(dst, rule, first + from, first + to, counts);
+				if (last) {
+					born.addAndGet(counts[0]);
+					died.addAndGet(counts[1]);
+				}
+			});
+			a = dst;
+			b = src;
+		}
+		tally[0] += born.get();
+		tally[1] += died.get();
+		return a;
+	}
+
+}
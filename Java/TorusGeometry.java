@@ -0,0 +1,78 @@
+/**
+ *
+ * Vertex data for drawing a board on the surface of a torus
+ * Vertex [i][j] is the corner of cell (i, j); cells wrap around both circles of the torus
+ *
+ **/
+
+import processing.core.PApplet;
+import processing.core.PConstants;
+import processing.core.PImage;
+import processing.core.PShape;
+import processing.core.PVector;
+
+public final class TorusGeometry {
+
+	private TorusGeometry() {}
+
+	// Create vertex data for a torus with the given major (center to tube) and minor (tube) radii
+	public static PVector[][] vertices(int boardLength, int boardHeight, float majorRad, float minorRad) {
+		return vertices(boardLength, boardHeight, boardLength, boardHeight, majorRad, minorRad);
+	}
+
+	// columns x rows vertices spaced for a boardLength x boardHeight board
+	private static PVector[][] vertices(int columns, int rows, int boardLength, int boardHeight, float majorRad, float minorRad) {
+		PVector[][] vertices = new PVector[columns][rows];
+		float tempRad, angle, innerAngle, tempY, tempX, tempZ;
+		for (int j = 0; j < rows; j++) {
+			angle = PApplet.radians(((float) j / (float) boardHeight) * 360.0f);
+			tempRad = minorRad * PApplet.cos(angle) + majorRad;
+			tempY = minorRad * PApplet.sin(angle);
+
+			for (int i = 0; i < columns; i++) {
+				innerAngle = PApplet.radians(((float) i / (float) boardLength) * 360.0f);
+				tempX = tempRad * PApplet.cos(innerAngle);
+				tempZ = tempRad * PApplet.sin(innerAngle);
+				vertices[i][j] = new PVector(tempX, tempY, tempZ);
+			}
+		}
+		return vertices;
+	}
+
+	/**
+	 *  Build the torus once as a retained shape, textured with one texel per cell of the given
+	 *  board-sized image, so each frame only uploads the image's changed pixels. The seam is
+	 *  closed with an extra row and column of vertices, which sit on top of the first ones but
+	 *  carry texture coordinate 1 instead of 0
+	 */
+	public static PShape mesh(PApplet app, PImage cells, float majorRad, float minorRad, boolean gridLines) {
+		int boardLength = cells.width, boardHeight = cells.height;
+		PVector[][] vertices = vertices(boardLength + 1, boardHeight + 1, boardLength, boardHeight, majorRad, minorRad);
+		PShape mesh = app.createShape();
+		mesh.beginShape(PConstants.QUADS);
+		mesh.textureMode(PConstants.NORMAL);
+		mesh.texture(cells);
+		if (!gridLines) mesh.noStroke();
+		for (int i = 0; i < boardLength; i++) {
+			for (int j = 0; j < boardHeight; j++) {
+				corner(mesh, vertices, i, j, boardLength, boardHeight, majorRad);
+				corner(mesh, vertices, i + 1, j, boardLength, boardHeight, majorRad);
+				corner(mesh, vertices, i + 1, j + 1, boardLength, boardHeight, majorRad);
+				corner(mesh, vertices, i, j + 1, boardLength, boardHeight, majorRad);
+			}
+		}
+		mesh.endShape();
+		return mesh;
+	}
+
+	// Vertex with its texture coordinate and the surface normal (pointing away from the tube's center)
+	private static void corner(PShape mesh, PVector[][] vertices, int i, int j, int boardLength, int boardHeight, float majorRad) {
+		PVector v = vertices[i][j];
+		float innerAngle = PApplet.radians(((float) i / (float) boardLength) * 360.0f);
+		PVector normal = new PVector(v.x - majorRad * PApplet.cos(innerAngle), v.y, v.z - majorRad * PApplet.sin(innerAngle));
+		normal.normalize();
+		mesh.normal(normal.x, normal.y, normal.z);
+		mesh.vertex(v.x, v.y, v.z, (float) i / boardLength, (float) j / boardHeight);
+	}
+
+}
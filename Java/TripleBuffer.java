@@ -0,0 +1,52 @@
+/**
+ *
+ * Lock-free hand-off of completed generations from one producer thread to one consumer thread
+ * The producer fills the back slot and publishes it; the consumer picks up the most recently
+ * published slot. Neither side ever waits for the other, and the consumer never sees a slot
+ * that is still being written
+ *
+ **/
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+public final class TripleBuffer<T> {
+
+	// The shared slot's index, plus FRESH while it holds a slot the consumer hasn't picked up
+	private static final int INDEX = 3, FRESH = 4;
+
+	private final Object[] slots;
+	private final AtomicInteger middle = new AtomicInteger(2);
+
+	// Owned by the producer and the consumer respectively
+	private int back = 0, front = 1;
+
+	public TripleBuffer(Supplier<T> factory) {
+		slots = new Object[] {factory.get(), factory.get(), factory.get()};
+	}
+
+	// Producer: the slot to write the next generation into
+	@SuppressWarnings("unchecked")
+	public T getBack() {
+		return (T) slots[back];
+	}
+
+	// Producer: hand the back slot over and take the shared one as the new back slot
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	// Consumer: switch to the latest published slot, if one arrived since the last call
+	public boolean acquire() {
+		if ((middle.get() & FRESH) == 0) return false;
+		front = middle.getAndSet(front) & INDEX;
+		return true;
+	}
+
+	// Consumer: the slot picked up by the last acquire()
+	@SuppressWarnings("unchecked")
+	public T getFront() {
+		return (T) slots[front];
+	}
+
+}
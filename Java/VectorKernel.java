@@ -0,0 +1,161 @@
+/**
+ *
+ * StepKernel built on the JDK Vector API, one SIMD register of words (or cells) per operation
+ * Needs the incubator module at compile and run time: --add-modules jdk.incubator.vector
+ * Kernels only loads this class when the module is present, so builds without it fall back to
+ * ScalarKernel
+ *
+ **/
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+public final class VectorKernel implements StepKernel {
+
+	private static final VectorSpecies<Long> LONGS = LongVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+
+	// Handles the words and cells left over after the last full vector, and the wrapping column ends
+	private final ScalarKernel scalar = new ScalarKernel();
+
+	public long lifeWords(long[] src, long[] dst, int above, int row, int below, int from, int to,
+			boolean conway, int birth, int survive, long[] tally) {
+		LongVector zero = LongVector.zero(LONGS), changed = zero;
+
+		// Births (low half of each lane) and deaths (high half), counted with a SWAR popcount as there
+		// is no lanewise bit count before JDK 19. It is written out in the loop with its masks
+		// broadcast once here: as a helper method, or summed in a separate accumulator per count,
+		// JDK 17 boxes the vectors and the counting costs more than the step
+		LongVector counts = zero;
+		LongVector m1 = LongVector.broadcast(LONGS, 0x5555555555555555L);
+		LongVector m2 = LongVector.broadcast(LONGS, 0x3333333333333333L);
+		LongVector m4 = LongVector.broadcast(LONGS, 0x0F0F0F0F0F0F0F0FL);
+		LongVector m8 = LongVector.broadcast(LONGS, 0xFFL);
+		int w = from;
+		for (int bound = from + LONGS.loopBound(to - from); w < bound; w += LONGS.length()) {
+
+			// Loading one word to either side lines up each word with the neighbor it borrows a bit from
+			LongVector a = LongVector.fromArray(LONGS, src, above + w);
+			LongVector c = LongVector.fromArray(LONGS, src, row + w);
+			LongVector b = LongVector.fromArray(LONGS, src, below + w);
+			LongVector aw = west(a, LongVector.fromArray(LONGS, src, above + w - 1));
+			LongVector cw = west(c, LongVector.fromArray(LONGS, src, row + w - 1));
+			LongVector bw = west(b, LongVector.fromArray(LONGS, src, below + w - 1));
+			LongVector ae = east(a, LongVector.fromArray(LONGS, src, above + w + 1));
+			LongVector ce = east(c, LongVector.fromArray(LONGS, src, row + w + 1));
+			LongVector be = east(b, LongVector.fromArray(LONGS, src, below + w + 1));
+
+			// Same adder tree as LifeGrid.lifeWord / ruleWord, lane by lane
+			LongVector ax = aw.lanewise(VectorOperators.XOR, a);
+			LongVector aOnes = ax.lanewise(VectorOperators.XOR, ae), aTwos = aw.and(a).or(ax.and(ae));
+			LongVector bx = bw.lanewise(VectorOperators.XOR, b);
+			LongVector bOnes = bx.lanewise(VectorOperators.XOR, be), bTwos = bw.and(b).or(bx.and(be));
+			LongVector cOnes = cw.lanewise(VectorOperators.XOR, ce), cTwos = cw.and(ce);
+			LongVector ox = aOnes.lanewise(VectorOperators.XOR, bOnes);
+			LongVector ones = ox.lanewise(VectorOperators.XOR, cOnes);
+			LongVector carry = aOnes.and(bOnes).or(ox.and(cOnes));
+			LongVector tx = aTwos.lanewise(VectorOperators.XOR, bTwos), ty = cTwos.lanewise(VectorOperators.XOR, carry);
+			LongVector twos = tx.lanewise(VectorOperators.XOR, ty);
+			LongVector p = aTwos.and(bTwos), q = cTwos.and(carry), m = tx.and(ty);
+
+			LongVector next;
+			if (conway) next = twos.and(p.or(q).or(m).not()).and(ones.or(c));
+			else {
+				LongVector fours = p.lanewise(VectorOperators.XOR, q).lanewise(VectorOperators.XOR, m), eights = p.and(q);
+				LongVector born = LongVector.zero(LONGS), kept = LongVector.zero(LONGS);
+				for (int n = 0; n <= 8; n++) {
+					if (((birth | survive) & (1 << n)) == 0) continue;
+					LongVector match = ((n & 1) != 0 ? ones : ones.not()).and((n & 2) != 0 ? twos : twos.not())
+							.and((n & 4) != 0 ? fours : fours.not()).and((n & 8) != 0 ? eights : eights.not());
+					if ((birth & (1 << n)) != 0) born = born.or(match);
+					if ((survive & (1 << n)) != 0) kept = kept.or(match);
+				}
+				next = born.and(c.not()).or(kept.and(c));
+			}
+			next.intoArray(dst, row + w);
+			LongVector diff = next.lanewise(VectorOperators.XOR, c);
+			changed = changed.or(diff);
+
+			// Cells born (x) and cells that died (y) in each lane: bits per pair, nibble and byte, then the byte sums
+			LongVector x = diff.and(next), y = diff.and(c);
+			x = x.sub(x.lanewise(VectorOperators.LSHR, 1).and(m1));
+			y = y.sub(y.lanewise(VectorOperators.LSHR, 1).and(m1));
+			x = x.and(m2).add(x.lanewise(VectorOperators.LSHR, 2).and(m2));
+			y = y.and(m2).add(y.lanewise(VectorOperators.LSHR, 2).and(m2));
+			x = x.add(x.lanewise(VectorOperators.LSHR, 4)).and(m4);
+			y = y.add(y.lanewise(VectorOperators.LSHR, 4)).and(m4);
+			x = x.add(x.lanewise(VectorOperators.LSHR, 8));
+			y = y.add(y.lanewise(VectorOperators.LSHR, 8));
+			x = x.add(x.lanewise(VectorOperators.LSHR, 16));
+			y = y.add(y.lanewise(VectorOperators.LSHR, 16));
+			x = x.add(x.lanewise(VectorOperators.LSHR, 32)).and(m8);
+			y = y.add(y.lanewise(VectorOperators.LSHR, 32)).and(m8);
+			counts = counts.add(x.add(y.lanewise(VectorOperators.LSHL, 32)));
+		}
+		long total = counts.reduceLanes(VectorOperators.ADD);
+		tally[0] += total & 0xFFFFFFFFL;
+		tally[1] += total >>> 32;
+		long diff = changed.reduceLanes(VectorOperators.OR);
+		if (w < to) diff |= scalar.lifeWords(src, dst, above, row, below, w, to, conway, birth, survive, tally);
+		return diff;
+	}
+
+	// Each cell's west neighbor: shift up one bit, carrying in the top bit of the previous word
+	private static LongVector west(LongVector words, LongVector previous) {
+		return words.lanewise(VectorOperators.LSHL, 1).or(previous.lanewise(VectorOperators.LSHR, 63));
+	}
+
+	// Each cell's east neighbor: shift down one bit, carrying in the bottom bit of the next word
+	private static LongVector east(LongVector words, LongVector following) {
+		return words.lanewise(VectorOperators.LSHR, 1).or(following.lanewise(VectorOperators.LSHL, 63));
+	}
+
+	public void neighbours(byte[] cells, int left, int center, int right, int height,
+			byte[] counts, byte[] incoming, int from, int to) {
+
+		// The first and last cells wrap around the column, so only [1, height - 1) is vectorised
+		int lo = Math.max(from, 1), hi = Math.min(to, height - 1);
+		if (lo >= hi) {
+			scalar.neighbours(cells, left, center, right, height, counts, incoming, from, to);
+			return;
+		}
+		if (from < lo) scalar.neighbours(cells, left, center, right, height, counts, incoming, from, lo);
+
+		int j = lo;
+		ByteVector zero = ByteVector.zero(BYTES);
+		for (int bound = lo + BYTES.loopBound(hi - lo); j < bound; j += BYTES.length()) {
+			ByteVector l = ByteVector.fromArray(BYTES, cells, left + j);
+			ByteVector r = ByteVector.fromArray(BYTES, cells, right + j);
+			ByteVector cDown = ByteVector.fromArray(BYTES, cells, center + j - 1);
+			ByteVector cUp = ByteVector.fromArray(BYTES, cells, center + j + 1);
+
+			// Byte lanes wrap, but the largest sum (8 prey and 8 predators) is 136, which reads back unsigned
+			weight(ByteVector.fromArray(BYTES, cells, left + j - 1)).add(weight(l))
+					.add(weight(ByteVector.fromArray(BYTES, cells, left + j + 1)))
+					.add(weight(cDown)).add(weight(cUp))
+					.add(weight(ByteVector.fromArray(BYTES, cells, right + j - 1))).add(weight(r))
+					.add(weight(ByteVector.fromArray(BYTES, cells, right + j + 1)))
+					.intoArray(counts, j);
+
+			VectorMask<Byte> in = mover(l, PredPreyBoard.MOVING_RIGHT).or(mover(r, PredPreyBoard.MOVING_LEFT))
+					.or(mover(cDown, PredPreyBoard.MOVING_UP)).or(mover(cUp, PredPreyBoard.MOVING_DOWN));
+			zero.blend((byte) 1, in).intoArray(incoming, j);
+		}
+		scalar.neighbours(cells, left, center, right, height, counts, incoming, j, to);
+	}
+
+	// 1 for prey, 16 for a predator (moving or not), lane by lane
+	private static ByteVector weight(ByteVector cells) {
+		return cells.and((byte) PredPreyBoard.PREY)
+				.or(cells.and((byte) PredPreyBoard.PREDATOR).lanewise(VectorOperators.LSHL, 3));
+	}
+
+	// Lanes holding a predator moving in the given direction
+	private static VectorMask<Byte> mover(ByteVector cells, int moving) {
+		return cells.and((byte) PredPreyBoard.MOVER_MASK).eq((byte) moving);
+	}
+
+}
@@ -0,0 +1,60 @@
+/**
+ *
+ * Board loads and saves per second in each file format (csv is the legacy loadBoard / saveBoard path)
+ *
+ **/
+
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BoardIOBenchmark {
+
+	@Param({"csv", "bin", "rle"})
+	public String format;
+
+	@Param({"180x100", "1024x1024"})
+	public String size;
+
+	@Param({"0.15"})
+	public double initProb;
+
+	private Callable<Object> load, save;
+
+	@Setup
+	public void setup() throws Exception {
+		int width = Workloads.width(size), height = Workloads.height(size);
+		load = Workloads.create("loadBoard", format, width, height, initProb, 42L);
+		save = Workloads.create("saveBoard", format, width, height, initProb, 42L);
+	}
+
+	@Benchmark
+	public Object load() throws Exception {
+		return load.call();
+	}
+
+	@Benchmark
+	public Object save() throws Exception {
+		return save.call();
+	}
+
+}
@@ -0,0 +1,38 @@
+/**
+ *
+ * Runs every benchmark in this package with the GC profiler, which adds allocation rate
+ * (gc.alloc.rate.norm: bytes allocated per batch of generations / load / save) to each result
+ *
+ * Build from the Java directory, with the JMH jars (jmh-core, jmh-generator-annprocess,
+ * jopt-simple, commons-math3) and Processing's core.jar in lib/; VectorKernel needs the incubator
+ * module to compile:
+ *   javac --add-modules jdk.incubator.vector -cp "lib/*" -d bench-out *.java bench/*.java
+ *   java -cp "bench-out:lib/*" bench.RunBenchmarks [JMH options, e.g. StepBenchmark.life -p size=1024x1024]
+ * At run time the module is only needed to measure the vector kernel: add --add-modules
+ * jdk.incubator.vector to the java command, or Kernels falls back to the scalar one
+ *
+ **/
+
+package bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public final class RunBenchmarks {
+
+	private RunBenchmarks() {}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		OptionsBuilder builder = new OptionsBuilder();
+		if (commandLine.getIncludes().isEmpty()) builder.include("bench\\..*Benchmark");
+		Options options = builder.parent(commandLine).addProfiler(GCProfiler.class).build();
+		new Runner(options).run();
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ *
+ * Time for Life (sparse and full stepping) and PredPrey to step GENERATIONS generations
+ * Each measurement is one batch of GENERATIONS steps from a freshly seeded board: a small Life
+ * board settles into ash within a few hundred generations, so stepping one board through every
+ * iteration would measure every density, sparse or not, on the same near-dead board
+ *
+ **/
+
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10, batchSize = StepBenchmark.GENERATIONS)
+@Measurement(iterations = 20, batchSize = StepBenchmark.GENERATIONS)
+@Fork(1)
+public class StepBenchmark {
+
+	// Generations per measurement, few enough that every board is still near its starting density
+	static final int GENERATIONS = 100;
+
+	@State(Scope.Thread)
+	public static class Life {
+
+		@Param({"180x100", "1024x1024", "4096x4096"})
+		public String size;
+
+		@Param({"0.05", "0.15", "0.5"})
+		public double initProb;
+
+		@Param({"true", "false"})
+		public boolean sparse;
+
+		@Param({"B3/S23"})
+		public String rule;
+
+		Callable<Object> step;
+
+		// A fresh board every iteration, so every batch measures the same stretch of generations
+		@Setup(Level.Iteration)
+		public void setup() throws Exception {
+			step = Workloads.create("lifeStep", Workloads.width(size), Workloads.height(size), rule, initProb, sparse, 42L);
+		}
+
+	}
+
+	@State(Scope.Thread)
+	public static class PredPrey {
+
+		@Param({"200x125", "1024x1024"})
+		public String size;
+
+		@Param({"0.15", "0.4"})
+		public double initPrey;
+
+		@Param({"0.005", "0.05"})
+		public double initPred;
+
+		@Param({"5"})
+		public int maxN;
+
+		Callable<Object> step;
+
+		@Setup(Level.Iteration)
+		public void setup() throws Exception {
+			step = Workloads.create("predPreyStep", Workloads.width(size), Workloads.height(size), initPrey, initPred, maxN, 42L);
+		}
+
+	}
+
+	@Benchmark
+	public Object life(Life state) throws Exception {
+		return state.step.call();
+	}
+
+	@Benchmark
+	public Object predPrey(PredPrey state) throws Exception {
+		return state.step.call();
+	}
+
+}
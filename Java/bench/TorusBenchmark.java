@@ -0,0 +1,47 @@
+/**
+ *
+ * Torus vertex generation for the 3D sketches, per board
+ *
+ **/
+
+package bench;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TorusBenchmark {
+
+	@Param({"220x150", "1024x1024"})
+	public String size;
+
+	private Callable<Object> vertices;
+
+	@Setup
+	public void setup() throws Exception {
+		vertices = Workloads.create("torusVertices", Workloads.width(size), Workloads.height(size));
+	}
+
+	@Benchmark
+	public Object vertices() throws Exception {
+		return vertices.call();
+	}
+
+}
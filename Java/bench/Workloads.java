@@ -0,0 +1,40 @@
+/**
+ *
+ * Bridge from the benchmarks to BenchWorkloads in the default package, which can't be imported
+ *
+ **/
+
+package bench;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+final class Workloads {
+
+	private Workloads() {}
+
+	// Call the BenchWorkloads factory with this name and argument count
+	@SuppressWarnings("unchecked")
+	static Callable<Object> create(String name, Object... args) throws Exception {
+		for (Method method : Class.forName("BenchWorkloads").getMethods()) {
+			if (!method.getName().equals(name) || method.getParameterCount() != args.length) continue;
+			try { return (Callable<Object>) method.invoke(null, args); }
+			catch (InvocationTargetException e) {
+				if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+				throw e;
+			}
+		}
+		throw new NoSuchMethodException("BenchWorkloads." + name);
+	}
+
+	// Board sizes are given to JMH as "WIDTHxHEIGHT"
+	static int width(String size) {
+		return Integer.parseInt(size.substring(0, size.indexOf('x')));
+	}
+
+	static int height(String size) {
+		return Integer.parseInt(size.substring(size.indexOf('x') + 1));
+	}
+
+}